@@ -0,0 +1,79 @@
+package xyz.nkomarn.harbor.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.nkomarn.harbor.benchmark.stub.StubPlayer;
+import xyz.nkomarn.harbor.listener.AfkListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One tick of the fallback AFK detection's movement scan. Between ticks a share of the players moves, the rest
+ * stands still, so both the moved and the unchanged paths of a sample are taken.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AfkSamplingBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int players;
+
+    /**
+     * Percentage of players that move every tick.
+     */
+    @Param({"0", "50"})
+    public int moving;
+
+    private HarborFixture fixture;
+    private Runnable scan;
+    private List<StubPlayer> movers;
+    private int tick;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = HarborFixture.builder()
+                .playersPerWorld(players)
+                .config("afk-detection.fallback-enabled", true)
+                .start();
+
+        // The scan is the only global timer the AFK listener schedules
+        scan = fixture.getServer().getScheduler().find(task -> task.getClass().getEnclosingClass() == AfkListener.class);
+        if (scan == null) {
+            throw new IllegalStateException("The fallback AFK detection isn't running");
+        }
+
+        movers = fixture.getPlayers().subList(0, players * moving / 100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void scan() {
+        float step = (tick++ & 1) == 0 ? 1 : -1;
+
+        for (StubPlayer player : movers) {
+            player.move(step, 0, 0);
+        }
+
+        scan.run();
+    }
+}
@@ -0,0 +1,104 @@
+package xyz.nkomarn.harbor.benchmark;
+
+import org.bukkit.GameMode;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.nkomarn.harbor.task.Checker;
+import xyz.nkomarn.harbor.util.WorldSleepSnapshot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queries the checker answers for every world on every pass, and a whole pass over one world.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckerBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int players;
+
+    private HarborFixture fixture;
+    private Checker checker;
+    private World world;
+    private List<Player> online;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // A third of the players sleep and every tenth is a spectator, so both the sleeping and excluded paths are taken
+        fixture = HarborFixture.builder()
+                .playersPerWorld(players)
+                .players((player, index) -> {
+                    player.setSleeping(index % 3 == 0);
+                    if (index % 10 == 0) {
+                        player.setGameMode(GameMode.SPECTATOR);
+                    }
+                })
+                .start();
+        checker = fixture.getHarbor().getChecker();
+        world = fixture.getWorlds().get(0).asWorld();
+        online = checker.getSleepIndex().getPlayers(world).stream().toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public double timescale() {
+        return checker.getTimescale(world);
+    }
+
+    @Benchmark
+    public List<Player> sleepingPlayers() {
+        return checker.getSleepingPlayers(world);
+    }
+
+    @Benchmark
+    public List<Player> sleepingPlayersIncludingExcluded() {
+        return checker.getSleepingPlayers(world, true);
+    }
+
+    /**
+     * Asks the exclusion providers about every player in the world, as joining or changing worlds does.
+     */
+    @Benchmark
+    public int excluded() {
+        int excluded = 0;
+
+        for (Player player : online) {
+            if (checker.isExcluded(player)) {
+                excluded++;
+            }
+        }
+
+        return excluded;
+    }
+
+    /**
+     * Captures and evaluates the world, the work a checker pass does per world.
+     */
+    @Benchmark
+    public WorldSleepSnapshot snapshot() {
+        return checker.takeSnapshot(world);
+    }
+}
@@ -0,0 +1,255 @@
+package xyz.nkomarn.harbor.benchmark;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.InvalidDescriptionException;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.benchmark.stub.StubPlayer;
+import xyz.nkomarn.harbor.benchmark.stub.StubServer;
+import xyz.nkomarn.harbor.benchmark.stub.StubWorld;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs the real Harbor plugin against the stand-in server, with a given number of worlds and players that are
+ * online from the start. Nothing happens between ticks, which only pass when {@link #tick()} is called.
+ */
+public final class HarborFixture implements AutoCloseable {
+    private final StubServer server;
+    private final Path dataFolder;
+    private final List<StubWorld> worlds;
+    private final List<StubPlayer> players;
+    private final FixtureHarbor harbor;
+
+    private HarborFixture(@NotNull Builder builder) throws IOException {
+        this.server = StubServer.get();
+        server.reset();
+
+        this.worlds = new ArrayList<>();
+        this.players = new ArrayList<>();
+
+        int worldCount = builder.worldNames.isEmpty() ? builder.worlds : builder.worldNames.size();
+        for (int w = 0; w < worldCount; w++) {
+            StubWorld world = builder.worldNames.isEmpty()
+                    ? new StubWorld("world_" + w, builder.time)
+                    : new StubWorld(builder.worldNames.get(w), builder.worldTimes.get(w));
+            server.addWorld(world);
+            worlds.add(world);
+
+            for (int p = 0; p < builder.playersPerWorld; p++) {
+                int index = players.size();
+                StubPlayer player = new StubPlayer("player_" + index);
+                server.addPlayer(player, world);
+                builder.playerSetup.accept(player, index);
+                players.add(player);
+            }
+        }
+
+        this.dataFolder = Files.createTempDirectory("harbor-benchmark");
+        writeConfig(builder.config);
+
+        try {
+            this.harbor = new FixtureHarbor(server, dataFolder.toFile());
+        } catch (InvalidDescriptionException | URISyntaxException e) {
+            throw new IOException("Failed to load Harbor's plugin description", e);
+        }
+
+        server.setPlugin(harbor);
+        harbor.enable();
+    }
+
+    @NotNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Advances the server by one tick.
+     */
+    public void tick() {
+        server.getScheduler().tick();
+    }
+
+    /**
+     * Advances the server by the given amount of ticks.
+     *
+     * @param ticks The amount of ticks.
+     */
+    public void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            tick();
+        }
+    }
+
+    @NotNull
+    public Harbor getHarbor() {
+        return harbor;
+    }
+
+    @NotNull
+    public StubServer getServer() {
+        return server;
+    }
+
+    @NotNull
+    public List<StubWorld> getWorlds() {
+        return Collections.unmodifiableList(worlds);
+    }
+
+    @NotNull
+    public List<StubPlayer> getPlayers() {
+        return Collections.unmodifiableList(players);
+    }
+
+    @Override
+    public void close() throws IOException {
+        harbor.disable();
+        server.reset();
+
+        try (Stream<Path> files = Files.walk(dataFolder)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Writes Harbor's default configuration with the given values changed, so Harbor starts with them.
+     */
+    private void writeConfig(@NotNull Map<String, Object> overrides) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+
+        try (InputStream stream = Harbor.class.getResourceAsStream("/config.yml")) {
+            if (stream == null) {
+                throw new IOException("Harbor's default configuration is missing");
+            }
+
+            try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+                config.load(reader);
+            }
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("Harbor's default configuration is invalid", e);
+        }
+
+        overrides.forEach(config::set);
+        config.save(dataFolder.resolve("config.yml").toFile());
+    }
+
+    public static final class Builder {
+        private final Map<String, Object> config = new LinkedHashMap<>();
+        private final List<String> worldNames = new ArrayList<>();
+        private final List<Long> worldTimes = new ArrayList<>();
+        private int worlds = 1;
+        private int playersPerWorld;
+        private long time = 13000;
+        private ObjIntConsumer<StubPlayer> playerSetup = (player, index) -> {
+        };
+
+        private Builder() {
+        }
+
+        public Builder worlds(int worlds) {
+            this.worlds = worlds;
+            return this;
+        }
+
+        /**
+         * Adds a world with the given name and time of day. Once any world is added this way, only the added
+         * worlds are created instead of the numbered ones.
+         *
+         * @param name The name of the world.
+         * @param time The time of day the world starts at.
+         */
+        public Builder world(@NotNull String name, long time) {
+            worldNames.add(name);
+            worldTimes.add(time);
+            return this;
+        }
+
+        public Builder playersPerWorld(int playersPerWorld) {
+            this.playersPerWorld = playersPerWorld;
+            return this;
+        }
+
+        /**
+         * @param time The time of day all worlds start at, night by default.
+         */
+        public Builder time(long time) {
+            this.time = time;
+            return this;
+        }
+
+        /**
+         * Changes a value of Harbor's default configuration.
+         *
+         * @param path  The path of the value.
+         * @param value The new value.
+         */
+        public Builder config(@NotNull String path, @NotNull Object value) {
+            config.put(path, value);
+            return this;
+        }
+
+        /**
+         * @param playerSetup Prepares each player before Harbor starts, given the player and their index.
+         */
+        public Builder players(@NotNull ObjIntConsumer<StubPlayer> playerSetup) {
+            this.playerSetup = playerSetup;
+            return this;
+        }
+
+        @NotNull
+        public HarborFixture start() throws IOException {
+            return new HarborFixture(this);
+        }
+    }
+
+    /**
+     * Harbor, created the way plugins are created outside of a server.
+     */
+    private static final class FixtureHarbor extends Harbor {
+        @SuppressWarnings("deprecation")
+        private FixtureHarbor(@NotNull StubServer server, @NotNull File dataFolder) throws InvalidDescriptionException, URISyntaxException {
+            super(new JavaPluginLoader(server.asServer()), loadDescription(), dataFolder,
+                    new File(Harbor.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+        }
+
+        private void enable() {
+            setEnabled(true);
+        }
+
+        private void disable() {
+            setEnabled(false);
+        }
+
+        @NotNull
+        private static PluginDescriptionFile loadDescription() throws InvalidDescriptionException {
+            InputStream stream = Harbor.class.getResourceAsStream("/plugin.yml");
+
+            if (stream == null) {
+                throw new InvalidDescriptionException("Harbor's plugin.yml is missing");
+            }
+
+            return new PluginDescriptionFile(stream);
+        }
+    }
+}
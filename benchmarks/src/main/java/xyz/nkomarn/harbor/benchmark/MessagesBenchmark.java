@@ -0,0 +1,109 @@
+package xyz.nkomarn.harbor.benchmark;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import xyz.nkomarn.harbor.benchmark.stub.StubWorld;
+import xyz.nkomarn.harbor.task.Checker;
+import xyz.nkomarn.harbor.util.Messages;
+import xyz.nkomarn.harbor.util.Settings;
+import xyz.nkomarn.harbor.util.WorldSleepSnapshot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the configured messages, for a world and for every player in it. The "changed" variants move the
+ * world's clock forward first, so the rendered time differs and nothing can be reused from the previous render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagesBenchmark {
+    private static final String PLAYER_MESSAGE = "<green>Rise and shine, [displayname]! <aqua>[12h]:[min] [mer_upper]";
+
+    @Param({"10", "100", "1000", "5000"})
+    public int players;
+
+    private HarborFixture fixture;
+    private Messages messages;
+    private Checker checker;
+    private StubWorld stubWorld;
+    private World world;
+    private List<Player> online;
+    private String worldMessage;
+    private WorldSleepSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = HarborFixture.builder()
+                .playersPerWorld(players)
+                .players((player, index) -> player.setSleeping(index % 3 == 0))
+                .start();
+        messages = fixture.getHarbor().getMessages();
+        checker = fixture.getHarbor().getChecker();
+        stubWorld = fixture.getWorlds().get(0);
+        world = stubWorld.asWorld();
+        online = checker.getSleepIndex().getPlayers(world).stream().toList();
+
+        // The bossbar only has world placeholders
+        Settings settings = fixture.getHarbor().getConfiguration().getSettings();
+        worldMessage = settings.getBossBarMessage();
+        snapshot = checker.takeSnapshot(world);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Component worldMessageUnchanged() {
+        return messages.prepareMessage(snapshot, worldMessage);
+    }
+
+    @Benchmark
+    public Component worldMessageChanged() {
+        return messages.prepareMessage(nextSnapshot(), worldMessage);
+    }
+
+    @Benchmark
+    public void playerMessageUnchanged(Blackhole blackhole) {
+        for (Player player : online) {
+            blackhole.consume(messages.prepareMessage(player, snapshot, PLAYER_MESSAGE));
+        }
+    }
+
+    @Benchmark
+    public void playerMessageChanged(Blackhole blackhole) {
+        WorldSleepSnapshot next = nextSnapshot();
+
+        for (Player player : online) {
+            blackhole.consume(messages.prepareMessage(player, next, PLAYER_MESSAGE));
+        }
+    }
+
+    private WorldSleepSnapshot nextSnapshot() {
+        // A minute of game time, so the [min] placeholder changes
+        stubWorld.advance(17);
+        return checker.takeSnapshot(world);
+    }
+}
@@ -0,0 +1,103 @@
+package xyz.nkomarn.harbor.benchmark;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.nkomarn.harbor.api.AFKStatusSink;
+import xyz.nkomarn.harbor.api.LogicType;
+import xyz.nkomarn.harbor.api.PushAFKProvider;
+import xyz.nkomarn.harbor.benchmark.stub.StubPlayer;
+import xyz.nkomarn.harbor.util.PlayerManager;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking the AFK status of every online player, with only the fallback detection or with a number of
+ * registered providers that report every other player as AFK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerManagerBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int players;
+
+    @Param({"0", "1", "3"})
+    public int providers;
+
+    private HarborFixture fixture;
+    private PlayerManager playerManager;
+    private Player[] online;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = HarborFixture.builder()
+                .playersPerWorld(players)
+                .start();
+        playerManager = fixture.getHarbor().getPlayerManager();
+
+        List<StubPlayer> stubs = fixture.getPlayers();
+        online = new Player[stubs.size()];
+        for (int i = 0; i < online.length; i++) {
+            online[i] = stubs.get(i).asPlayer();
+        }
+
+        for (int i = 0; i < providers; i++) {
+            fixture.getHarbor().addAFKProvider(new EveryOtherProvider(online), i % 2 == 0 ? LogicType.AND : LogicType.OR);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public int isAfk() {
+        int afk = 0;
+
+        for (Player player : online) {
+            if (playerManager.isAfk(player)) {
+                afk++;
+            }
+        }
+
+        return afk;
+    }
+
+    private static final class EveryOtherProvider implements PushAFKProvider {
+        private final Player[] players;
+
+        private EveryOtherProvider(@NotNull Player[] players) {
+            this.players = players;
+        }
+
+        @Override
+        public void start(@NotNull AFKStatusSink sink) {
+            for (int i = 0; i < players.length; i += 2) {
+                sink.setAFK(players[i], true);
+            }
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+}
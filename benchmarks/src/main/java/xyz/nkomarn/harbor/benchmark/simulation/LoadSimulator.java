@@ -0,0 +1,79 @@
+package xyz.nkomarn.harbor.benchmark.simulation;
+
+import xyz.nkomarn.harbor.benchmark.HarborFixture;
+import xyz.nkomarn.harbor.benchmark.stub.StubWorld;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Runs Harbor headless against many worlds and players for a number of game ticks and reports what each tick
+ * cost: the tail of the tick time and the bytes allocated, next to Harbor's own metrics. Unlike the JMH
+ * benchmarks, which measure one path at a time, this shows how the paths add up over whole days and nights.
+ * <p>
+ * For example, {@code java -cp target/benchmarks.jar xyz.nkomarn.harbor.benchmark.simulation.LoadSimulator
+ * --preset=many-worlds --ticks=48000}. See {@link Scenario} for all options.
+ * <p>
+ * Everything runs on the calling thread, including Harbor's asynchronous tasks, so allocations are measured
+ * per thread. The fallback AFK detection measures idle time on the wall clock, so whether idle players become
+ * AFK depends on how fast the simulation runs.
+ */
+public final class LoadSimulator {
+    private LoadSimulator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Scenario scenario = Scenario.parse(args);
+        PrintStream out = System.out;
+
+        HarborFixture.Builder builder = HarborFixture.builder()
+                .worlds(scenario.worlds)
+                .playersPerWorld(scenario.playersPerWorld);
+        scenario.config.forEach(builder::config);
+
+        try (HarborFixture fixture = builder.start()) {
+            Simulation simulation = new Simulation(scenario, fixture);
+            out.println("Simulating " + scenario);
+
+            for (int i = 0; i < scenario.warmupTicks; i++) {
+                simulation.step(null);
+            }
+
+            fixture.getHarbor().getMetrics().reset();
+            TickStats stats = new TickStats(scenario.ticks);
+            long timeUpdates = timeUpdates(fixture);
+            long start = System.nanoTime();
+
+            for (int i = 0; i < scenario.ticks; i++) {
+                simulation.step(stats);
+            }
+
+            out.printf("Ran %d ticks in %.1f s%n", scenario.ticks, (System.nanoTime() - start) / 1e9);
+            out.println();
+            stats.print(out);
+            out.println();
+            out.println("Player actions: " + simulation.getCounters());
+            out.println("Time updates: " + (timeUpdates(fixture) - timeUpdates));
+            out.println("Failed tasks: " + fixture.getServer().getScheduler().getFailures());
+            out.println();
+            out.println("Harbor metrics:");
+
+            for (Map.Entry<String, Number> entry : fixture.getHarbor().getMetrics().snapshot().entrySet()) {
+                if (!entry.getKey().startsWith("world.")) {
+                    out.println("  " + entry.getKey() + ": " + entry.getValue());
+                }
+            }
+        }
+    }
+
+    private static long timeUpdates(HarborFixture fixture) {
+        long updates = 0;
+
+        for (StubWorld world : fixture.getWorlds()) {
+            updates += world.getTimeUpdates();
+        }
+
+        return updates;
+    }
+}
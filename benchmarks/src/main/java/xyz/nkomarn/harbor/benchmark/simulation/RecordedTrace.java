@@ -0,0 +1,134 @@
+package xyz.nkomarn.harbor.benchmark.simulation;
+
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.trace.TraceFormat;
+import xyz.nkomarn.harbor.trace.TraceReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A trace read fully into memory, so replaying it doesn't wait on the disk or the decompression.
+ */
+final class RecordedTrace implements TraceReader.Handler {
+    final List<String> worldNames = new ArrayList<>();
+    /** The first recorded time of day of every world, or -1 if it was never sampled. */
+    final List<Long> worldTimes = new ArrayList<>();
+    final List<String> playerNames = new ArrayList<>();
+    final List<Record> records = new ArrayList<>();
+    long startedAt;
+    long lastTick;
+
+    private RecordedTrace() {
+    }
+
+    @NotNull
+    static RecordedTrace load(@NotNull File file) throws IOException {
+        RecordedTrace trace = new RecordedTrace();
+
+        try (TraceReader reader = TraceReader.open(file)) {
+            trace.startedAt = reader.getStartedAt();
+            trace.lastTick = reader.read(trace);
+        }
+
+        return trace;
+    }
+
+    @Override
+    public void world(long tick, int world, @NotNull UUID uuid, @NotNull String name) {
+        worldNames.add(name);
+        worldTimes.add(-1L);
+    }
+
+    @Override
+    public void player(long tick, int player, @NotNull UUID uuid, @NotNull String name) {
+        playerNames.add(name);
+    }
+
+    @Override
+    public void join(long tick, int player, int world) {
+        records.add(new Record(tick, TraceFormat.JOIN, player, world));
+    }
+
+    @Override
+    public void quit(long tick, int player) {
+        records.add(new Record(tick, TraceFormat.QUIT, player, 0));
+    }
+
+    @Override
+    public void worldChange(long tick, int player, int world) {
+        records.add(new Record(tick, TraceFormat.WORLD_CHANGE, player, world));
+    }
+
+    @Override
+    public void bedEnter(long tick, int player) {
+        records.add(new Record(tick, TraceFormat.BED_ENTER, player, 0));
+    }
+
+    @Override
+    public void bedLeave(long tick, int player) {
+        records.add(new Record(tick, TraceFormat.BED_LEAVE, player, 0));
+    }
+
+    @Override
+    public void activity(long tick, int player, byte kind) {
+        records.add(new Record(tick, TraceFormat.ACTIVITY, player, kind));
+    }
+
+    @Override
+    public void move(long tick, int player, float x, float y, float z, float yaw, float pitch) {
+        Record record = new Record(tick, TraceFormat.MOVE, player, 0);
+        record.x = x;
+        record.y = y;
+        record.z = z;
+        record.yaw = yaw;
+        record.pitch = pitch;
+        records.add(record);
+    }
+
+    @Override
+    public void state(long tick, int player, int gameMode, int flags) {
+        Record record = new Record(tick, TraceFormat.STATE, player, gameMode);
+        record.flags = flags;
+        records.add(record);
+    }
+
+    @Override
+    public void time(long tick, int world, long time) {
+        if (worldTimes.get(world) < 0) {
+            worldTimes.set(world, time);
+        }
+
+        Record record = new Record(tick, TraceFormat.TIME, -1, world);
+        record.time = time;
+        records.add(record);
+    }
+
+    /**
+     * A single record of the trace. Which fields are used depends on the type, see {@link TraceFormat}.
+     */
+    static final class Record {
+        final long tick;
+        final byte type;
+        final int player;
+        /** The world, activity kind or game mode of the record. */
+        final int value;
+        int flags;
+        long time;
+        float x;
+        float y;
+        float z;
+        float yaw;
+        float pitch;
+
+        private Record(long tick, byte type, int player, int value) {
+            this.tick = tick;
+            this.type = type;
+            this.player = player;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package xyz.nkomarn.harbor.benchmark.simulation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * What a simulation runs: how many worlds and players, for how long, and how the players behave. Rates are
+ * chances per player per tick.
+ */
+final class Scenario {
+    int worlds = 1;
+    int playersPerWorld = 100;
+    int ticks = 24000;
+    int warmupTicks = 1200;
+    long seed = 1;
+    /** Whether the worlds' clocks are spread over the day, instead of all worlds starting at dusk together. */
+    boolean staggerWorlds = true;
+    /** Share of players that go to bed at night. */
+    double sleepers = 0.6;
+    /** Ticks after nightfall within which the sleepers go to bed. */
+    int bedWave = 1200;
+    /** Share of players that never move or chat, and eventually become AFK. */
+    double idlers = 0.1;
+    double moveRate = 0.3;
+    double chatRate = 1 / 2400D;
+    double commandRate = 1 / 6000D;
+    double quitRate = 1 / 36000D;
+    int minOfflineTicks = 200;
+    int maxOfflineTicks = 2400;
+    double worldChangeRate = 1 / 72000D;
+    /** Changes to Harbor's default configuration, given as {@code --config.<path>=value}. */
+    final Map<String, Object> config = new LinkedHashMap<>();
+
+    /**
+     * Reads a scenario from command line arguments of the form {@code --name=value}. A {@code --preset} is
+     * applied first, so other arguments can change it.
+     *
+     * @param args The arguments.
+     *
+     * @return The scenario.
+     */
+    @NotNull
+    static Scenario parse(@NotNull String[] args) {
+        Scenario scenario = new Scenario();
+
+        for (String arg : args) {
+            if (arg.startsWith("--preset=")) {
+                scenario.preset(arg.substring("--preset=".length()));
+            }
+        }
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+
+            String value = arg.substring(separator + 1);
+
+            if (arg.startsWith("--config.")) {
+                scenario.config.put(arg.substring("--config.".length(), separator), parseValue(value));
+                continue;
+            }
+
+            switch (arg.substring(2, separator)) {
+                case "preset":
+                    break;
+                case "worlds":
+                    scenario.worlds = Integer.parseInt(value);
+                    break;
+                case "players":
+                    scenario.playersPerWorld = Integer.parseInt(value);
+                    break;
+                case "ticks":
+                    scenario.ticks = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    scenario.warmupTicks = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    scenario.seed = Long.parseLong(value);
+                    break;
+                case "stagger":
+                    scenario.staggerWorlds = Boolean.parseBoolean(value);
+                    break;
+                case "sleepers":
+                    scenario.sleepers = Double.parseDouble(value);
+                    break;
+                case "bed-wave":
+                    scenario.bedWave = Integer.parseInt(value);
+                    break;
+                case "idlers":
+                    scenario.idlers = Double.parseDouble(value);
+                    break;
+                case "move-rate":
+                    scenario.moveRate = Double.parseDouble(value);
+                    break;
+                case "chat-rate":
+                    scenario.chatRate = Double.parseDouble(value);
+                    break;
+                case "command-rate":
+                    scenario.commandRate = Double.parseDouble(value);
+                    break;
+                case "quit-rate":
+                    scenario.quitRate = Double.parseDouble(value);
+                    break;
+                case "world-change-rate":
+                    scenario.worldChangeRate = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+
+        return scenario;
+    }
+
+    @NotNull
+    static Object parseValue(@NotNull String value) {
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ignored) {
+        }
+
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ignored) {
+        }
+
+        return value;
+    }
+
+    private void preset(@NotNull String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "many-worlds":
+                worlds = 200;
+                playersPerWorld = 50;
+                break;
+            case "one-world":
+                worlds = 1;
+                playersPerWorld = 5000;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown preset " + name + ", expected many-worlds or one-world");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return worlds + " worlds x " + playersPerWorld + " players, " + ticks + " ticks after " + warmupTicks
+                + " warmup ticks (seed " + seed + (staggerWorlds ? ", staggered clocks" : "") + ")";
+    }
+}
@@ -0,0 +1,300 @@
+package xyz.nkomarn.harbor.benchmark.simulation;
+
+import io.papermc.paper.chat.ChatRenderer;
+import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.chat.SignedMessage;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.player.PlayerBedEnterEvent;
+import org.bukkit.event.player.PlayerBedLeaveEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.benchmark.HarborFixture;
+import xyz.nkomarn.harbor.benchmark.stub.StubPlayer;
+import xyz.nkomarn.harbor.benchmark.stub.StubServer;
+import xyz.nkomarn.harbor.benchmark.stub.StubWorld;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Drives the players of a {@link HarborFixture} tick by tick: clocks run, players go to bed in waves after
+ * nightfall and get up in the morning, move, chat, run commands, change worlds, quit and come back. All of it
+ * is drawn from a seeded random source, so the same scenario always produces the same inputs.
+ * <p>
+ * The cost of a tick is the time Harbor's listeners spend on the tick's events plus the time its tasks spend
+ * in the tick, along with the bytes both allocate. Creating the events is not counted.
+ */
+final class Simulation {
+    private static final long DAY_LENGTH = 24000;
+    private static final long NIGHT_START = 12542;
+    private static final long NIGHT_END = 23460;
+    private static final Component CHAT = Component.text("gn");
+
+    private final Scenario scenario;
+    private final HarborFixture fixture;
+    private final StubServer server;
+    private final SplittableRandom random;
+    private final List<StubWorld> worlds;
+    private final Map<StubWorld, Boolean> nights;
+    private final List<Actor> actors;
+    private final com.sun.management.ThreadMXBean threads;
+    private final Counters counters;
+    private long eventNanos;
+    private long eventBytes;
+    private int tick;
+
+    Simulation(@NotNull Scenario scenario, @NotNull HarborFixture fixture) {
+        this.scenario = scenario;
+        this.fixture = fixture;
+        this.server = fixture.getServer();
+        this.random = new SplittableRandom(scenario.seed);
+        this.worlds = fixture.getWorlds();
+        this.nights = new IdentityHashMap<>();
+        this.actors = new ArrayList<>(fixture.getPlayers().size());
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.counters = new Counters();
+
+        for (int i = 0; i < worlds.size(); i++) {
+            StubWorld world = worlds.get(i);
+
+            if (scenario.staggerWorlds) {
+                world.advance(i * DAY_LENGTH / worlds.size());
+            }
+
+            nights.put(world, false);
+        }
+
+        for (StubPlayer player : fixture.getPlayers()) {
+            actors.add(new Actor(player, random.nextDouble() < scenario.idlers));
+        }
+    }
+
+    /**
+     * Runs one tick of the scenario.
+     *
+     * @param stats Where to record the cost of the tick, or null during warmup.
+     */
+    void step(TickStats stats) {
+        tick++;
+        eventNanos = 0;
+        eventBytes = 0;
+
+        for (StubWorld world : worlds) {
+            world.advance(1);
+            boolean night = isNight(world);
+
+            if (night != nights.put(world, night)) {
+                if (night) {
+                    nightfall(world);
+                } else {
+                    morning(world);
+                }
+            }
+        }
+
+        for (Actor actor : actors) {
+            act(actor);
+        }
+
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        fixture.tick();
+        long nanos = System.nanoTime() - start;
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+
+        if (stats != null) {
+            stats.record(nanos + eventNanos, bytes + eventBytes);
+        }
+    }
+
+    @NotNull
+    Counters getCounters() {
+        return counters;
+    }
+
+    private void act(@NotNull Actor actor) {
+        StubPlayer player = actor.player;
+
+        if (!player.isOnline()) {
+            if (tick >= actor.rejoinTick) {
+                join(actor);
+            }
+            return;
+        }
+
+        if (actor.inBed) {
+            return;
+        }
+
+        if (actor.bedtime >= 0 && tick >= actor.bedtime) {
+            actor.bedtime = -1;
+            enterBed(actor);
+            return;
+        }
+
+        if (!actor.idle) {
+            if (random.nextDouble() < scenario.moveRate) {
+                player.move(random.nextDouble() - 0.5, 0, random.nextDouble() - 0.5);
+                counters.moves++;
+            }
+
+            if (random.nextDouble() < scenario.chatRate) {
+                Player bukkitPlayer = player.asPlayer();
+                fire(new AsyncChatEvent(true, bukkitPlayer, new HashSet<>(), ChatRenderer.defaultRenderer(), CHAT, CHAT,
+                        SignedMessage.system("gn", CHAT)));
+                counters.chats++;
+            }
+
+            if (random.nextDouble() < scenario.commandRate) {
+                fire(new PlayerCommandPreprocessEvent(player.asPlayer(), "/spawn"));
+                counters.commands++;
+            }
+        }
+
+        if (random.nextDouble() < scenario.quitRate) {
+            quit(actor);
+        } else if (worlds.size() > 1 && random.nextDouble() < scenario.worldChangeRate) {
+            changeWorld(actor);
+        }
+    }
+
+    private void nightfall(@NotNull StubWorld world) {
+        for (Actor actor : actors) {
+            if (actor.player.isOnline() && actor.player.getWorld() == world) {
+                planBedtime(actor);
+            }
+        }
+    }
+
+    private void morning(@NotNull StubWorld world) {
+        for (Actor actor : actors) {
+            actor.bedtime = -1;
+
+            if (actor.inBed && actor.player.getWorld() == world) {
+                leaveBed(actor);
+            }
+        }
+    }
+
+    private void planBedtime(@NotNull Actor actor) {
+        if (!actor.idle && random.nextDouble() < scenario.sleepers) {
+            actor.bedtime = tick + random.nextInt(Math.max(1, scenario.bedWave));
+        }
+    }
+
+    private void enterBed(@NotNull Actor actor) {
+        PlayerBedEnterEvent event = new PlayerBedEnterEvent(actor.player.asPlayer(), null, PlayerBedEnterEvent.BedEnterResult.OK);
+        fire(event);
+
+        if (!event.isCancelled()) {
+            actor.inBed = true;
+            actor.player.setSleeping(true);
+            counters.bedEnters++;
+        }
+    }
+
+    private void leaveBed(@NotNull Actor actor) {
+        actor.inBed = false;
+        actor.player.setSleeping(false);
+        fire(new PlayerBedLeaveEvent(actor.player.asPlayer(), null, false));
+        counters.bedLeaves++;
+    }
+
+    private void join(@NotNull Actor actor) {
+        StubWorld world = worlds.get(random.nextInt(worlds.size()));
+        server.addPlayer(actor.player, world);
+        fire(new PlayerJoinEvent(actor.player.asPlayer(), (Component) null));
+        counters.joins++;
+
+        if (isNight(world)) {
+            planBedtime(actor);
+        }
+    }
+
+    private void quit(@NotNull Actor actor) {
+        if (actor.inBed) {
+            leaveBed(actor);
+        }
+
+        fire(new PlayerQuitEvent(actor.player.asPlayer(), (Component) null, PlayerQuitEvent.QuitReason.DISCONNECTED));
+        server.removePlayer(actor.player);
+        actor.bedtime = -1;
+        actor.rejoinTick = tick + scenario.minOfflineTicks
+                + random.nextInt(Math.max(1, scenario.maxOfflineTicks - scenario.minOfflineTicks));
+        counters.quits++;
+    }
+
+    private void changeWorld(@NotNull Actor actor) {
+        StubWorld from = actor.player.getWorld();
+        StubWorld to = worlds.get(random.nextInt(worlds.size()));
+
+        if (to == from) {
+            return;
+        }
+
+        server.movePlayer(actor.player, to);
+        fire(new PlayerChangedWorldEvent(actor.player.asPlayer(), from.asWorld()));
+        actor.bedtime = -1;
+        counters.worldChanges++;
+
+        if (isNight(to)) {
+            planBedtime(actor);
+        }
+    }
+
+    private void fire(@NotNull Event event) {
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        server.callEvent(event);
+        eventNanos += System.nanoTime() - start;
+        eventBytes += threads.getCurrentThreadAllocatedBytes() - bytes;
+    }
+
+    private static boolean isNight(@NotNull StubWorld world) {
+        long time = world.getTime();
+        return time >= NIGHT_START && time < NIGHT_END;
+    }
+
+    private static final class Actor {
+        private final StubPlayer player;
+        private final boolean idle;
+        private long bedtime = -1;
+        private long rejoinTick;
+        private boolean inBed;
+
+        private Actor(@NotNull StubPlayer player, boolean idle) {
+            this.player = player;
+            this.idle = idle;
+        }
+    }
+
+    /**
+     * How many of each scripted action happened.
+     */
+    static final class Counters {
+        long bedEnters;
+        long bedLeaves;
+        long joins;
+        long quits;
+        long moves;
+        long chats;
+        long commands;
+        long worldChanges;
+
+        @Override
+        public String toString() {
+            return "bed enters " + bedEnters + ", bed leaves " + bedLeaves + ", joins " + joins + ", quits " + quits
+                    + ", moves " + moves + ", chats " + chats + ", commands " + commands + ", world changes " + worldChanges;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package xyz.nkomarn.harbor.benchmark.simulation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The cost of every measured tick: the time the server spent in Harbor's tasks and the bytes they allocated.
+ */
+final class TickStats {
+    private static final double TICK_NANOS = 50_000_000D;
+
+    private final long[] nanos;
+    private final long[] bytes;
+    private int count;
+
+    TickStats(int ticks) {
+        this.nanos = new long[ticks];
+        this.bytes = new long[ticks];
+    }
+
+    void record(long tickNanos, long tickBytes) {
+        nanos[count] = tickNanos;
+        bytes[count] = tickBytes;
+        count++;
+    }
+
+    void print(@NotNull PrintStream out) {
+        if (count == 0) {
+            out.println("No ticks were measured");
+            return;
+        }
+
+        long[] sortedNanos = Arrays.copyOf(nanos, count);
+        long[] sortedBytes = Arrays.copyOf(bytes, count);
+        Arrays.sort(sortedNanos);
+        Arrays.sort(sortedBytes);
+
+        double meanNanos = mean(sortedNanos);
+        double meanBytes = mean(sortedBytes);
+
+        out.println("Tick cost (us)         mean      p50      p90      p99    p99.9      max");
+        out.println(String.format(Locale.ROOT, "                   %8.1f %8.1f %8.1f %8.1f %8.1f %8.1f",
+                meanNanos / 1000, percentile(sortedNanos, 0.5) / 1000D, percentile(sortedNanos, 0.9) / 1000D,
+                percentile(sortedNanos, 0.99) / 1000D, percentile(sortedNanos, 0.999) / 1000D,
+                sortedNanos[count - 1] / 1000D));
+        out.println(String.format(Locale.ROOT, "Share of a 50 ms tick: %.3f%% mean, %.3f%% p99",
+                meanNanos / TICK_NANOS * 100, percentile(sortedNanos, 0.99) / TICK_NANOS * 100));
+
+        out.println("Allocated (KB/tick)    mean      p50      p99      max");
+        out.println(String.format(Locale.ROOT, "                   %8.1f %8.1f %8.1f %8.1f",
+                meanBytes / 1024, percentile(sortedBytes, 0.5) / 1024D, percentile(sortedBytes, 0.99) / 1024D,
+                sortedBytes[count - 1] / 1024D));
+        out.println(String.format(Locale.ROOT, "Allocation rate at 20 TPS: %.2f MB/s", meanBytes * 20 / (1024 * 1024)));
+
+        out.println("Slowest ticks:");
+        Integer[] order = new Integer[count];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Long.compare(nanos[b], nanos[a]));
+        for (int i = 0; i < Math.min(5, count); i++) {
+            out.println(String.format(Locale.ROOT, "  tick %d: %.1f us, %.1f KB", order[i], nanos[order[i]] / 1000D,
+                    bytes[order[i]] / 1024D));
+        }
+    }
+
+    private double mean(@NotNull long[] sorted) {
+        double sum = 0;
+
+        for (long value : sorted) {
+            sum += value;
+        }
+
+        return sum / sorted.length;
+    }
+
+    private static long percentile(@NotNull long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,300 @@
+package xyz.nkomarn.harbor.benchmark.simulation;
+
+import io.papermc.paper.chat.ChatRenderer;
+import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.chat.SignedMessage;
+import net.kyori.adventure.text.Component;
+import org.bukkit.GameMode;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerBedEnterEvent;
+import org.bukkit.event.player.PlayerBedLeaveEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.benchmark.HarborFixture;
+import xyz.nkomarn.harbor.benchmark.stub.StubPlayer;
+import xyz.nkomarn.harbor.benchmark.stub.StubServer;
+import xyz.nkomarn.harbor.benchmark.stub.StubWorld;
+import xyz.nkomarn.harbor.trace.TraceFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feeds a trace recorded on a real server back through Harbor as fast as possible, to compare the throughput and
+ * the decisions of different Harbor versions on the same nights.
+ * <p>
+ * For example, {@code java -cp target/benchmarks.jar xyz.nkomarn.harbor.benchmark.simulation.TraceReplay
+ * harbor-20260101-220000.trace.gz --timeline=timeline.csv}. Configuration can be changed with
+ * {@code --config.<path>=value}, as for the {@link LoadSimulator}.
+ * <p>
+ * Worlds run their daylight cycle and Harbor changes their time as it would on the server, so the recorded time
+ * samples are only compared, not applied. The timeline lists both times of every sample, which can be diffed
+ * between two replays. Inventory clicks are replayed as commands, since both only count as activity.
+ */
+public final class TraceReplay {
+    private static final Component CHAT = Component.text("replayed");
+    private static final int DAY_LENGTH = 24000;
+
+    private final RecordedTrace trace;
+    private final HarborFixture fixture;
+    private final StubServer server;
+    private final Harbor harbor;
+    private final List<StubWorld> worlds;
+    private final List<StubPlayer> players;
+    private final int[] flags;
+    private final com.sun.management.ThreadMXBean threads;
+    private final PrintWriter timeline;
+    private long timeSamples;
+    private long driftTotal;
+    private long driftMax;
+
+    private TraceReplay(@NotNull RecordedTrace trace, @NotNull HarborFixture fixture, PrintWriter timeline) {
+        this.trace = trace;
+        this.fixture = fixture;
+        this.server = fixture.getServer();
+        this.harbor = fixture.getHarbor();
+        this.worlds = fixture.getWorlds();
+        this.players = new ArrayList<>(trace.playerNames.size());
+        this.flags = new int[trace.playerNames.size()];
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.timeline = timeline;
+
+        for (String name : trace.playerNames) {
+            players.add(new StubPlayer(name));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File file = null;
+        File timelineFile = null;
+        Map<String, Object> config = new LinkedHashMap<>();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+
+            if (!arg.startsWith("--")) {
+                file = new File(arg);
+            } else if (arg.startsWith("--config.") && separator > 0) {
+                config.put(arg.substring("--config.".length(), separator), Scenario.parseValue(arg.substring(separator + 1)));
+            } else if (arg.startsWith("--timeline=")) {
+                timelineFile = new File(arg.substring("--timeline=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+
+        if (file == null) {
+            throw new IllegalArgumentException("Expected the trace file to replay");
+        }
+
+        PrintStream out = System.out;
+        RecordedTrace trace = RecordedTrace.load(file);
+        out.printf("Replaying %s: %d records over %d ticks (%.1f hours), %d worlds, %d players%n", file.getName(),
+                trace.records.size(), trace.lastTick, trace.lastTick / 72000D, trace.worldNames.size(), trace.playerNames.size());
+
+        HarborFixture.Builder builder = HarborFixture.builder();
+        for (int i = 0; i < trace.worldNames.size(); i++) {
+            builder.world(trace.worldNames.get(i), Math.max(0, trace.worldTimes.get(i)));
+        }
+        config.forEach(builder::config);
+
+        try (HarborFixture fixture = builder.start();
+             PrintWriter timeline = timelineFile == null ? null : new PrintWriter(timelineFile, StandardCharsets.UTF_8)) {
+            if (timeline != null) {
+                timeline.println("tick,world,recorded,replayed");
+            }
+
+            TraceReplay replay = new TraceReplay(trace, fixture, timeline);
+            TickStats stats = new TickStats((int) trace.lastTick + 1);
+            long start = System.nanoTime();
+            replay.run(stats);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            out.printf("Replayed in %.1f s, %.0f ticks/s, %.0fx real time%n", seconds, (trace.lastTick + 1) / seconds,
+                    (trace.lastTick + 1) / 20D / seconds);
+            out.println();
+            stats.print(out);
+            out.println();
+            replay.printDecisions(out);
+        }
+    }
+
+    private void run(@NotNull TickStats stats) {
+        List<RecordedTrace.Record> records = trace.records;
+        int index = 0;
+
+        for (long tick = 0; tick <= trace.lastTick; tick++) {
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            while (index < records.size() && records.get(index).tick == tick) {
+                apply(records.get(index++));
+            }
+
+            for (StubWorld world : worlds) {
+                world.advance(1);
+            }
+            fixture.tick();
+
+            stats.record(System.nanoTime() - start, threads.getCurrentThreadAllocatedBytes() - bytes);
+        }
+    }
+
+    private void apply(@NotNull RecordedTrace.Record record) {
+        if (record.type == TraceFormat.TIME) {
+            compareTime(record);
+            return;
+        }
+
+        StubPlayer stub = players.get(record.player);
+        Player player = stub.asPlayer();
+
+        if (record.type == TraceFormat.MOVE) {
+            stub.setLocation(record.x, record.y, record.z, record.yaw, record.pitch);
+            return;
+        }
+
+        if (record.type == TraceFormat.STATE) {
+            applyState(record, stub);
+            return;
+        }
+
+        if (record.type == TraceFormat.JOIN) {
+            if (!stub.isOnline()) {
+                server.addPlayer(stub, worlds.get(record.value));
+                server.callEvent(new PlayerJoinEvent(player, (Component) null));
+            }
+            return;
+        }
+
+        if (!stub.isOnline()) {
+            // The join was dropped by the recorder, or happened before the recording started
+            return;
+        }
+
+        switch (record.type) {
+            case TraceFormat.QUIT:
+                stub.setSleeping(false);
+                server.callEvent(new PlayerQuitEvent(player, (Component) null, PlayerQuitEvent.QuitReason.DISCONNECTED));
+                server.removePlayer(stub);
+                break;
+            case TraceFormat.WORLD_CHANGE: {
+                StubWorld from = stub.getWorld();
+                StubWorld to = worlds.get(record.value);
+                if (from != to) {
+                    server.movePlayer(stub, to);
+                    server.callEvent(new PlayerChangedWorldEvent(player, from.asWorld()));
+                }
+                break;
+            }
+            case TraceFormat.BED_ENTER: {
+                PlayerBedEnterEvent event = server.callEvent(new PlayerBedEnterEvent(player, null, PlayerBedEnterEvent.BedEnterResult.OK));
+                if (!event.isCancelled()) {
+                    stub.setSleeping(true);
+                }
+                break;
+            }
+            case TraceFormat.BED_LEAVE:
+                if (stub.isSleeping()) {
+                    stub.setSleeping(false);
+                    server.callEvent(new PlayerBedLeaveEvent(player, null, false));
+                }
+                break;
+            case TraceFormat.ACTIVITY:
+                if (record.value == TraceFormat.ACTIVITY_CHAT) {
+                    server.callEvent(new AsyncChatEvent(true, player, new HashSet<>(), ChatRenderer.defaultRenderer(), CHAT, CHAT,
+                            SignedMessage.system("replayed", CHAT)));
+                } else {
+                    server.callEvent(new PlayerCommandPreprocessEvent(player, "/replayed"));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Applies a game mode and exclusion change the way the server and the plugins behind it report it to Harbor.
+     */
+    private void applyState(@NotNull RecordedTrace.Record record, @NotNull StubPlayer stub) {
+        Player player = stub.asPlayer();
+        GameMode gameMode = GameMode.values()[record.value];
+        int changed = flags[record.player] ^ record.flags;
+        flags[record.player] = record.flags;
+
+        if (gameMode != stub.getGameMode()) {
+            if (stub.isOnline()) {
+                server.callEvent(new PlayerGameModeChangeEvent(player, gameMode, PlayerGameModeChangeEvent.Cause.UNKNOWN, null));
+            }
+            stub.setGameMode(gameMode);
+        }
+
+        boolean vanished = (record.flags & TraceFormat.FLAG_VANISHED) != 0;
+        stub.setVanished(vanished);
+        stub.setSleepingIgnored((record.flags & TraceFormat.FLAG_SLEEPING_IGNORED) != 0);
+        // The recorded decision is replayed through the ignore permission, which also covers exclusions by other plugins
+        if ((record.flags & TraceFormat.FLAG_EXCLUDED) != 0) {
+            stub.addPermission("harbor.ignored");
+        } else {
+            stub.removePermission("harbor.ignored");
+        }
+
+        if (!stub.isOnline() || changed == 0) {
+            return;
+        }
+
+        if ((changed & TraceFormat.FLAG_VANISHED) != 0) {
+            harbor.getVanishTracker().setVanished(player, vanished);
+        }
+
+        if ((changed & (TraceFormat.FLAG_EXCLUDED | TraceFormat.FLAG_SLEEPING_IGNORED)) != 0) {
+            harbor.invalidateExclusions(player);
+        }
+    }
+
+    private void compareTime(@NotNull RecordedTrace.Record record) {
+        StubWorld world = worlds.get(record.value);
+        long replayed = world.getTime();
+        long difference = Math.abs(replayed - record.time);
+        long drift = Math.min(difference, DAY_LENGTH - difference);
+
+        timeSamples++;
+        driftTotal += drift;
+        driftMax = Math.max(driftMax, drift);
+
+        if (timeline != null) {
+            timeline.println(record.tick + "," + world.getName() + "," + record.time + "," + replayed);
+        }
+    }
+
+    private void printDecisions(@NotNull PrintStream out) {
+        out.printf("Time of day against the recording: %d samples, %.0f ticks apart on average, %d at most%n",
+                timeSamples, timeSamples == 0 ? 0D : (double) driftTotal / timeSamples, driftMax);
+        out.println("Failed tasks: " + server.getScheduler().getFailures());
+        out.println();
+        out.println("Harbor metrics:");
+
+        for (Map.Entry<String, Number> entry : harbor.getMetrics().snapshot().entrySet()) {
+            String key = entry.getKey();
+
+            if (!key.startsWith("world.") || key.endsWith(".skips-started") || key.endsWith(".skips-completed")
+                    || key.endsWith(".time-updates")) {
+                out.println("  " + key + ": " + entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package xyz.nkomarn.harbor.benchmark.stub;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.permissions.Permission;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The state behind a stand-in {@link Player}: where they are, whether they sleep, and what was sent to them.
+ */
+public final class StubPlayer {
+    private static final MetadataValue VANISHED = Stubs.create(MetadataValue.class, new Stubs.Handler() {
+        @Override
+        protected Object handle(@NotNull Object proxy, @NotNull Method method, @NotNull Object[] args) {
+            switch (method.getName()) {
+                case "value":
+                case "asBoolean":
+                    return true;
+                default:
+                    return unhandled(method);
+            }
+        }
+    });
+
+    private final UUID uuid;
+    private final String name;
+    private final Component displayName;
+    private final Set<String> permissions;
+    private final Player player;
+    private StubWorld world;
+    private double x;
+    private double y;
+    private double z;
+    private float yaw;
+    private float pitch;
+    private boolean sleeping;
+    private boolean sleepingIgnored;
+    private boolean vanished;
+    private boolean online;
+    private GameMode gameMode;
+    private long titles;
+    private long bossBarChanges;
+
+    public StubPlayer(@NotNull String name) {
+        this.uuid = UUID.nameUUIDFromBytes(("player:" + name).getBytes(StandardCharsets.UTF_8));
+        this.name = name;
+        this.displayName = Component.text(name);
+        this.permissions = new HashSet<>();
+        this.gameMode = GameMode.SURVIVAL;
+        this.player = Stubs.create(Player.class, new PlayerHandler());
+    }
+
+    @NotNull
+    public Player asPlayer() {
+        return player;
+    }
+
+    @NotNull
+    public UUID getUniqueId() {
+        return uuid;
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    public StubWorld getWorld() {
+        return world;
+    }
+
+    void setWorld(StubWorld world) {
+        this.world = world;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    void setOnline(boolean online) {
+        this.online = online;
+    }
+
+    /**
+     * Moves the player by the given offset.
+     */
+    public void move(double dx, double dy, double dz) {
+        x += dx;
+        y += dy;
+        z += dz;
+    }
+
+    /**
+     * Turns the player by the given angles.
+     */
+    public void turn(float dyaw, float dpitch) {
+        yaw += dyaw;
+        pitch += dpitch;
+    }
+
+    /**
+     * Puts the player at the given position, looking in the given direction.
+     */
+    public void setLocation(double x, double y, double z, float yaw, float pitch) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+    }
+
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    public void setSleeping(boolean sleeping) {
+        this.sleeping = sleeping;
+    }
+
+    public void setSleepingIgnored(boolean sleepingIgnored) {
+        this.sleepingIgnored = sleepingIgnored;
+    }
+
+    public void setVanished(boolean vanished) {
+        this.vanished = vanished;
+    }
+
+    @NotNull
+    public GameMode getGameMode() {
+        return gameMode;
+    }
+
+    public void setGameMode(@NotNull GameMode gameMode) {
+        this.gameMode = gameMode;
+    }
+
+    public void addPermission(@NotNull String permission) {
+        permissions.add(permission);
+    }
+
+    public void removePermission(@NotNull String permission) {
+        permissions.remove(permission);
+    }
+
+    /**
+     * @return How many titles were shown to the player.
+     */
+    public long getTitles() {
+        return titles;
+    }
+
+    /**
+     * @return How often a bossbar was shown to or hidden from the player.
+     */
+    public long getBossBarChanges() {
+        return bossBarChanges;
+    }
+
+    @Override
+    public String toString() {
+        return "StubPlayer{" + name + "}";
+    }
+
+    @NotNull
+    private Location getLocation(@NotNull Location location) {
+        location.setWorld(world == null ? null : world.asWorld());
+        location.setX(x);
+        location.setY(y);
+        location.setZ(z);
+        location.setYaw(yaw);
+        location.setPitch(pitch);
+        return location;
+    }
+
+    private final class PlayerHandler extends Stubs.Handler {
+        @Override
+        protected Object handle(@NotNull Object proxy, @NotNull Method method, @NotNull Object[] args) {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                case "getDisplayName":
+                    return name;
+                case "displayName":
+                    return args.length == 0 ? displayName : null;
+                case "getWorld":
+                    return world == null ? null : world.asWorld();
+                case "getLocation":
+                    return getLocation(args.length == 0 ? new Location(null, 0, 0, 0) : (Location) args[0]);
+                case "isOnline":
+                case "isValid":
+                case "isConnected":
+                    return online;
+                case "isSleeping":
+                    return sleeping;
+                case "wakeup":
+                    sleeping = false;
+                    return null;
+                case "isSleepingIgnored":
+                    return sleepingIgnored;
+                case "setSleepingIgnored":
+                    sleepingIgnored = (boolean) args[0];
+                    return null;
+                case "getGameMode":
+                    return gameMode;
+                case "setGameMode":
+                    gameMode = (GameMode) args[0];
+                    return null;
+                case "hasPermission":
+                case "isPermissionSet":
+                    return permissions.contains(args[0] instanceof Permission ? ((Permission) args[0]).getName() : (String) args[0]);
+                case "getMetadata":
+                    return vanished && "vanished".equals(args[0]) ? List.of(VANISHED) : Collections.emptyList();
+                case "hasMetadata":
+                    return vanished && "vanished".equals(args[0]);
+                case "showTitle":
+                    titles++;
+                    return null;
+                case "showBossBar":
+                case "hideBossBar":
+                    bossBarChanges++;
+                    return null;
+                default:
+                    return unhandled(method);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return StubPlayer.this.toString();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package xyz.nkomarn.harbor.benchmark.stub;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A stand-in for the server, holding the stand-in worlds and players and a {@link TickScheduler}. Events are
+ * dispatched synchronously to listeners registered through the stand-in plugin manager, using Bukkit's own
+ * handler lists.
+ * <p>
+ * Bukkit only accepts one server per JVM, so there is a single instance that is {@link #reset()} between runs.
+ */
+public final class StubServer {
+    private static StubServer instance;
+
+    private final Logger logger;
+    private final TickScheduler scheduler;
+    private final Map<UUID, StubWorld> worlds;
+    private final Map<UUID, StubPlayer> players;
+    private final Map<String, PluginCommand> commands;
+    private final PluginManager pluginManager;
+    private final Server server;
+    private Plugin plugin;
+
+    private StubServer() {
+        this.logger = Logger.getLogger("StubServer");
+        this.scheduler = new TickScheduler(logger);
+        this.worlds = new LinkedHashMap<>();
+        this.players = new LinkedHashMap<>();
+        this.commands = new HashMap<>();
+        this.pluginManager = Stubs.create(PluginManager.class, new PluginManagerHandler());
+        this.server = Stubs.create(Server.class, new ServerHandler());
+    }
+
+    /**
+     * Returns the stand-in server, installing it as Bukkit's server on first use.
+     *
+     * @return The stand-in server.
+     */
+    @NotNull
+    public static synchronized StubServer get() {
+        if (instance == null) {
+            instance = new StubServer();
+
+            // Bukkit.setServer() also asks the server implementation for its build information, which isn't there
+            try {
+                Field field = Bukkit.class.getDeclaredField("server");
+                field.setAccessible(true);
+                field.set(null, instance.server);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to install the stand-in server", e);
+            }
+        }
+
+        return instance;
+    }
+
+    @NotNull
+    public Server asServer() {
+        return server;
+    }
+
+    @NotNull
+    public Logger getLogger() {
+        return logger;
+    }
+
+    @NotNull
+    public TickScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Sets the plugin that owns the commands handed out by the server.
+     *
+     * @param plugin The plugin under test.
+     */
+    public void setPlugin(@Nullable Plugin plugin) {
+        this.plugin = plugin;
+        commands.clear();
+    }
+
+    /**
+     * Drops all worlds, players, tasks and listeners.
+     */
+    public void reset() {
+        scheduler.clear();
+        worlds.clear();
+        players.clear();
+        commands.clear();
+        HandlerList.unregisterAll();
+        plugin = null;
+    }
+
+    public void addWorld(@NotNull StubWorld world) {
+        worlds.put(world.getUid(), world);
+    }
+
+    public void removeWorld(@NotNull StubWorld world) {
+        worlds.remove(world.getUid());
+    }
+
+    @NotNull
+    public Collection<StubWorld> getWorlds() {
+        return worlds.values();
+    }
+
+    @NotNull
+    public Collection<StubPlayer> getPlayers() {
+        return players.values();
+    }
+
+    /**
+     * Puts a player into a world and marks them online, without firing any events.
+     *
+     * @param player The player.
+     * @param world  The world to put them in.
+     */
+    public void addPlayer(@NotNull StubPlayer player, @NotNull StubWorld world) {
+        player.setOnline(true);
+        player.setWorld(world);
+        world.addPlayer(player.asPlayer());
+        players.put(player.getUniqueId(), player);
+    }
+
+    /**
+     * Takes a player offline, without firing any events.
+     *
+     * @param player The player.
+     */
+    public void removePlayer(@NotNull StubPlayer player) {
+        if (players.remove(player.getUniqueId()) == null) {
+            return;
+        }
+
+        player.getWorld().removePlayer(player.asPlayer());
+        player.setOnline(false);
+    }
+
+    /**
+     * Moves a player to another world, without firing any events.
+     *
+     * @param player The player.
+     * @param world  The world to move them to.
+     */
+    public void movePlayer(@NotNull StubPlayer player, @NotNull StubWorld world) {
+        player.getWorld().removePlayer(player.asPlayer());
+        player.setWorld(world);
+        world.addPlayer(player.asPlayer());
+    }
+
+    /**
+     * Calls an event on the listeners registered for it, like the server would.
+     *
+     * @param event The event to call.
+     *
+     * @return The event, for checking whether it was cancelled.
+     */
+    public <T extends Event> T callEvent(@NotNull T event) {
+        for (RegisteredListener listener : event.getHandlers().getRegisteredListeners()) {
+            try {
+                listener.callEvent(event);
+            } catch (Throwable throwable) {
+                logger.log(Level.WARNING, "Could not pass " + event.getEventName(), throwable);
+            }
+        }
+
+        return event;
+    }
+
+    private void registerEvents(@NotNull Listener listener, @NotNull Plugin owner) {
+        for (Class<?> type = listener.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                EventHandler handler = method.getAnnotation(EventHandler.class);
+
+                if (handler == null || method.getParameterCount() != 1 || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                    continue;
+                }
+
+                Class<? extends Event> eventClass = method.getParameterTypes()[0].asSubclass(Event.class);
+                method.setAccessible(true);
+                EventExecutor executor = (target, event) -> {
+                    if (!eventClass.isInstance(event)) {
+                        return;
+                    }
+
+                    try {
+                        method.invoke(target, event);
+                    } catch (InvocationTargetException e) {
+                        throw new EventException(e.getCause());
+                    } catch (IllegalAccessException e) {
+                        throw new EventException(e);
+                    }
+                };
+
+                registerEvent(eventClass, listener, handler.priority(), executor, owner, handler.ignoreCancelled());
+            }
+        }
+    }
+
+    private void registerEvent(@NotNull Class<? extends Event> eventClass, @NotNull Listener listener, @NotNull EventPriority priority,
+                               @NotNull EventExecutor executor, @NotNull Plugin owner, boolean ignoreCancelled) {
+        getHandlerList(eventClass).register(new RegisteredListener(listener, executor, priority, owner, ignoreCancelled));
+    }
+
+    @NotNull
+    private static HandlerList getHandlerList(@NotNull Class<?> eventClass) {
+        for (Class<?> type = eventClass; type != null && Event.class.isAssignableFrom(type); type = type.getSuperclass()) {
+            try {
+                Method method = type.getDeclaredMethod("getHandlerList");
+                method.setAccessible(true);
+                return (HandlerList) method.invoke(null);
+            } catch (NoSuchMethodException ignored) {
+                // Registered on a superclass
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalPluginAccessException(e.toString());
+            }
+        }
+
+        throw new IllegalPluginAccessException("Unable to find handler list for event " + eventClass.getName());
+    }
+
+    @Nullable
+    private PluginCommand getCommand(@NotNull String name) {
+        if (plugin == null || !plugin.getDescription().getCommands().containsKey(name)) {
+            return null;
+        }
+
+        return commands.computeIfAbsent(name, alias -> {
+            try {
+                Constructor<PluginCommand> constructor = PluginCommand.class.getDeclaredConstructor(String.class, Plugin.class);
+                constructor.setAccessible(true);
+                return constructor.newInstance(alias, plugin);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create command " + alias, e);
+            }
+        });
+    }
+
+    private final class ServerHandler extends Stubs.Handler {
+        @Override
+        protected Object handle(@NotNull Object proxy, @NotNull Method method, @NotNull Object[] args) {
+            switch (method.getName()) {
+                case "getLogger":
+                    return logger;
+                case "getName":
+                    return "StubServer";
+                case "getScheduler":
+                    return scheduler.asBukkitScheduler();
+                case "getPluginManager":
+                    return pluginManager;
+                case "getWorlds": {
+                    List<World> list = new ArrayList<>(worlds.size());
+                    worlds.values().forEach(world -> list.add(world.asWorld()));
+                    return list;
+                }
+                case "getWorld": {
+                    if (args[0] instanceof UUID) {
+                        StubWorld world = worlds.get(args[0]);
+                        return world == null ? null : world.asWorld();
+                    }
+
+                    for (StubWorld world : worlds.values()) {
+                        if (world.getName().equals(args[0])) {
+                            return world.asWorld();
+                        }
+                    }
+                    return null;
+                }
+                case "getOnlinePlayers": {
+                    List<Player> list = new ArrayList<>(players.size());
+                    players.values().forEach(player -> list.add(player.asPlayer()));
+                    return list;
+                }
+                case "getPlayer": {
+                    StubPlayer player = args[0] instanceof UUID ? players.get(args[0]) : null;
+                    return player == null ? null : player.asPlayer();
+                }
+                case "getPluginCommand":
+                    return getCommand((String) args[0]);
+                case "isPrimaryThread":
+                    return true;
+                case "getCurrentTick":
+                    return scheduler.getCurrentTick();
+                default:
+                    return unhandled(method);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "StubServer";
+        }
+    }
+
+    private final class PluginManagerHandler extends Stubs.Handler {
+        @Override
+        protected Object handle(@NotNull Object proxy, @NotNull Method method, @NotNull Object[] args) {
+            switch (method.getName()) {
+                case "registerEvents":
+                    registerEvents((Listener) args[0], (Plugin) args[1]);
+                    return null;
+                case "registerEvent": {
+                    @SuppressWarnings("unchecked")
+                    Class<? extends Event> eventClass = (Class<? extends Event>) args[0];
+                    registerEvent(eventClass, (Listener) args[1], (EventPriority) args[2], (EventExecutor) args[3],
+                            (Plugin) args[4], args.length > 5 && (boolean) args[5]);
+                    return null;
+                }
+                case "callEvent":
+                    callEvent((Event) args[0]);
+                    return null;
+                case "getPlugin":
+                    return plugin != null && plugin.getName().equals(args[0]) ? plugin : null;
+                case "isPluginEnabled":
+                    return args[0] instanceof Plugin ? ((Plugin) args[0]).isEnabled()
+                            : plugin != null && plugin.getName().equals(args[0]) && plugin.isEnabled();
+                case "getPlugins":
+                    return plugin == null ? new Plugin[0] : new Plugin[]{plugin};
+                default:
+                    return unhandled(method);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "StubPluginManager";
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package xyz.nkomarn.harbor.benchmark.stub;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The state behind a stand-in {@link World}: its time, weather and players.
+ */
+public final class StubWorld {
+    private final UUID uid;
+    private final String name;
+    private final List<Player> players;
+    private final World world;
+    private long fullTime;
+    private boolean storm;
+    private boolean thundering;
+    private long timeUpdates;
+
+    public StubWorld(@NotNull String name, long time) {
+        this.uid = UUID.nameUUIDFromBytes(("world:" + name).getBytes(StandardCharsets.UTF_8));
+        this.name = name;
+        this.players = new ArrayList<>();
+        this.fullTime = time;
+        this.world = Stubs.create(World.class, new WorldHandler());
+    }
+
+    @NotNull
+    public World asWorld() {
+        return world;
+    }
+
+    @NotNull
+    public UUID getUid() {
+        return uid;
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The time of day, between 0 and 23999.
+     */
+    public long getTime() {
+        return fullTime % 24000;
+    }
+
+    /**
+     * Sets the time of day, moving the full time forward like the server does.
+     *
+     * @param time The new time of day.
+     */
+    public void setTime(long time) {
+        long day = fullTime - getTime();
+        long full = day + time;
+        fullTime = full < fullTime ? full + 24000 : full;
+        timeUpdates++;
+    }
+
+    /**
+     * Lets the given amount of ticks pass, as a server with the daylight cycle enabled does.
+     *
+     * @param ticks The amount of ticks.
+     */
+    public void advance(long ticks) {
+        fullTime += ticks;
+    }
+
+    /**
+     * @return How often the time was set, the number of time packets a server would have sent.
+     */
+    public long getTimeUpdates() {
+        return timeUpdates;
+    }
+
+    public boolean hasStorm() {
+        return storm;
+    }
+
+    public void setStorm(boolean storm) {
+        this.storm = storm;
+    }
+
+    public boolean isThundering() {
+        return thundering;
+    }
+
+    public void setThundering(boolean thundering) {
+        this.thundering = thundering;
+    }
+
+    @NotNull
+    public List<Player> getPlayers() {
+        return Collections.unmodifiableList(players);
+    }
+
+    void addPlayer(@NotNull Player player) {
+        players.add(player);
+    }
+
+    void removePlayer(@NotNull Player player) {
+        players.remove(player);
+    }
+
+    @Override
+    public String toString() {
+        return "StubWorld{" + name + "}";
+    }
+
+    private final class WorldHandler extends Stubs.Handler {
+        @Override
+        protected Object handle(@NotNull Object proxy, @NotNull Method method, @NotNull Object[] args) {
+            switch (method.getName()) {
+                case "getUID":
+                    return uid;
+                case "getName":
+                    return name;
+                case "getTime":
+                    return getTime();
+                case "getFullTime":
+                    return fullTime;
+                case "setTime":
+                    setTime((long) args[0]);
+                    return null;
+                case "setFullTime":
+                    fullTime = (long) args[0];
+                    timeUpdates++;
+                    return null;
+                case "hasStorm":
+                    return storm;
+                case "setStorm":
+                    storm = (boolean) args[0];
+                    return null;
+                case "isThundering":
+                    return thundering;
+                case "setThundering":
+                    thundering = (boolean) args[0];
+                    return null;
+                case "getPlayers":
+                    return new ArrayList<>(players);
+                case "getPlayerCount":
+                    return players.size();
+                case "getEnvironment":
+                    return World.Environment.NORMAL;
+                default:
+                    return unhandled(method);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return StubWorld.this.toString();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package xyz.nkomarn.harbor.benchmark.stub;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Creates stand-ins for Bukkit interfaces. A stand-in only implements the methods Harbor calls, anything else
+ * returns the default value of its return type, so the interfaces don't have to be implemented in full.
+ */
+public final class Stubs {
+    private Stubs() {
+    }
+
+    /**
+     * Creates a stand-in for the given interface.
+     *
+     * @param type    The interface to implement.
+     * @param handler The implemented methods, by name.
+     *
+     * @return The stand-in.
+     */
+    @NotNull
+    public static <T> T create(@NotNull Class<T> type, @NotNull Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Returns what a stand-in returns for methods it doesn't implement: false, zero, empty collections and
+     * otherwise null.
+     *
+     * @param type The return type of the method.
+     *
+     * @return The default value.
+     */
+    @Nullable
+    public static Object defaultValue(@NotNull Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0D;
+        } else if (type == float.class) {
+            return 0F;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == char.class) {
+            return (char) 0;
+        } else if (type == String.class) {
+            return "";
+        } else if (type == List.class || type == java.util.Collection.class) {
+            return Collections.emptyList();
+        } else if (type == Set.class) {
+            return Collections.emptySet();
+        } else if (type == Map.class) {
+            return Collections.emptyMap();
+        } else if (type == Optional.class) {
+            return Optional.empty();
+        } else if (type == Stream.class) {
+            return Stream.empty();
+        }
+
+        return null;
+    }
+
+    /**
+     * Dispatches the calls of a stand-in by method name. Identity methods of {@link Object} behave as they do
+     * for any other object.
+     */
+    public abstract static class Handler implements InvocationHandler {
+        @Override
+        public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return toString();
+                }
+            }
+
+            return handle(proxy, method, args == null ? new Object[0] : args);
+        }
+
+        /**
+         * Handles a call to the stand-in.
+         *
+         * @param proxy  The stand-in.
+         * @param method The called method.
+         * @param args   The arguments, never null.
+         *
+         * @return The result, usually {@link #unhandled(Method)} for methods that aren't implemented.
+         */
+        @Nullable
+        protected abstract Object handle(@NotNull Object proxy, @NotNull Method method, @NotNull Object[] args) throws Throwable;
+
+        @Nullable
+        protected final Object unhandled(@NotNull Method method) {
+            return defaultValue(method.getReturnType());
+        }
+    }
+}
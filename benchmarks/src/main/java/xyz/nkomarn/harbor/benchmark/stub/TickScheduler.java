@@ -0,0 +1,226 @@
+package xyz.nkomarn.harbor.benchmark.stub;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A deterministic stand-in for the {@link BukkitScheduler}. Time only passes when {@link #tick()} is called:
+ * every tick runs the synchronous tasks that are due in the order they were scheduled, and then all
+ * asynchronous tasks, so that anything they hand back to the main thread runs on the next tick just like it
+ * would on a server where the async work finished within the tick.
+ */
+public final class TickScheduler {
+    private final Logger logger;
+    private final PriorityQueue<Task> queue;
+    private final ArrayDeque<Runnable> async;
+    private final BukkitScheduler scheduler;
+    private int tick;
+    private int nextId;
+    private long sequence;
+    private long failures;
+
+    public TickScheduler(@NotNull Logger logger) {
+        this.logger = logger;
+        this.queue = new PriorityQueue<>(Comparator.comparingLong((Task task) -> task.due).thenComparingLong(task -> task.sequence));
+        this.async = new ArrayDeque<>();
+        this.scheduler = Stubs.create(BukkitScheduler.class, new SchedulerHandler());
+    }
+
+    /**
+     * @return The scheduler to hand out as {@link org.bukkit.Server#getScheduler()}.
+     */
+    @NotNull
+    public BukkitScheduler asBukkitScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Advances time by one tick, running everything that is due.
+     */
+    public void tick() {
+        tick++;
+
+        Task task;
+        while ((task = queue.peek()) != null && task.due <= tick) {
+            queue.poll();
+
+            if (task.cancelled) {
+                continue;
+            }
+
+            run(task.runnable);
+
+            if (task.period > 0 && !task.cancelled) {
+                task.due = tick + task.period;
+                task.sequence = sequence++;
+                queue.add(task);
+            }
+        }
+
+        Runnable runnable;
+        while ((runnable = async.poll()) != null) {
+            run(runnable);
+        }
+    }
+
+    /**
+     * @return The current tick, starting at 0.
+     */
+    public int getCurrentTick() {
+        return tick;
+    }
+
+    /**
+     * @return How many tasks threw an exception so far.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Finds a scheduled task, for running it on its own.
+     *
+     * @param filter Which task to find.
+     *
+     * @return The first scheduled task that matches, or null if none does.
+     */
+    @Nullable
+    public Runnable find(@NotNull Predicate<Runnable> filter) {
+        for (Task task : queue) {
+            if (!task.cancelled && filter.test(task.runnable)) {
+                return task.runnable;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Drops every scheduled task.
+     */
+    public void clear() {
+        queue.forEach(task -> task.cancelled = true);
+        queue.clear();
+        async.clear();
+    }
+
+    private void run(@NotNull Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (Throwable throwable) {
+            failures++;
+            logger.log(Level.WARNING, "Task threw an exception", throwable);
+        }
+    }
+
+    @NotNull
+    private BukkitTask schedule(@NotNull Plugin plugin, @NotNull Object task, long delay, long period, boolean sync) {
+        Task scheduled = new Task(plugin, nextId++, sync);
+        scheduled.runnable = wrap(task, scheduled);
+
+        if (!sync) {
+            async.add(scheduled.runnable);
+            return scheduled.handle;
+        }
+
+        // Like Bukkit, a delay below one tick runs the task on the next tick
+        scheduled.due = tick + Math.max(1, delay);
+        scheduled.period = period < 0 ? 0 : Math.max(1, period);
+        scheduled.sequence = sequence++;
+        queue.add(scheduled);
+        return scheduled.handle;
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private static Runnable wrap(@NotNull Object task, @NotNull Task scheduled) {
+        if (task instanceof Runnable) {
+            return (Runnable) task;
+        }
+
+        Consumer<BukkitTask> consumer = (Consumer<BukkitTask>) task;
+        return () -> consumer.accept(scheduled.handle);
+    }
+
+    private final class SchedulerHandler extends Stubs.Handler {
+        @Override
+        protected Object handle(@NotNull Object proxy, @NotNull Method method, @NotNull Object[] args) {
+            switch (method.getName()) {
+                case "runTask":
+                    return schedule((Plugin) args[0], args[1], 1, -1, true);
+                case "runTaskLater":
+                    return schedule((Plugin) args[0], args[1], (long) args[2], -1, true);
+                case "runTaskTimer":
+                    return schedule((Plugin) args[0], args[1], (long) args[2], (long) args[3], true);
+                case "runTaskAsynchronously":
+                case "runTaskLaterAsynchronously":
+                    return schedule((Plugin) args[0], args[1], 0, -1, false);
+                case "scheduleSyncDelayedTask":
+                    return schedule((Plugin) args[0], args[1], args.length > 2 ? (long) args[2] : 1, -1, true).getTaskId();
+                case "cancelTask":
+                    queue.removeIf(task -> task.id == (int) args[0]);
+                    return null;
+                case "cancelTasks":
+                    queue.removeIf(task -> task.plugin == args[0]);
+                    return null;
+                case "getPendingTasks": {
+                    List<BukkitTask> tasks = new ArrayList<>();
+                    queue.forEach(task -> tasks.add(task.handle));
+                    return tasks;
+                }
+                default:
+                    return unhandled(method);
+            }
+        }
+    }
+
+    private static final class Task {
+        private final Plugin plugin;
+        private final int id;
+        private final BukkitTask handle;
+        private Runnable runnable;
+        private long due;
+        private long period;
+        private long sequence;
+        private boolean cancelled;
+
+        private Task(@NotNull Plugin plugin, int id, boolean sync) {
+            this.plugin = plugin;
+            this.id = id;
+            this.handle = Stubs.create(BukkitTask.class, new Stubs.Handler() {
+                @Override
+                protected Object handle(@NotNull Object proxy, @NotNull Method method, @NotNull Object[] args) {
+                    switch (method.getName()) {
+                        case "getTaskId":
+                            return id;
+                        case "getOwner":
+                            return plugin;
+                        case "isSync":
+                            return sync;
+                        case "isCancelled":
+                            return cancelled;
+                        case "cancel":
+                            cancelled = true;
+                            return null;
+                        default:
+                            return unhandled(method);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -3,57 +3,142 @@ package xyz.nkomarn.harbor;
 import com.earth2me.essentials.Essentials;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.api.AFKProvider;
 import xyz.nkomarn.harbor.api.ExclusionProvider;
 import xyz.nkomarn.harbor.api.LogicType;
+import xyz.nkomarn.harbor.api.PushAFKProvider;
 import xyz.nkomarn.harbor.command.ForceSkipCommand;
 import xyz.nkomarn.harbor.command.HarborCommand;
 import xyz.nkomarn.harbor.listener.BedListener;
+import xyz.nkomarn.harbor.metrics.HarborMetrics;
+import xyz.nkomarn.harbor.metrics.HarborMetricsBean;
+import xyz.nkomarn.harbor.scheduler.HarborScheduler;
 import xyz.nkomarn.harbor.task.Checker;
+import xyz.nkomarn.harbor.trace.TraceRecorder;
 import xyz.nkomarn.harbor.util.Config;
 import xyz.nkomarn.harbor.util.Messages;
 import xyz.nkomarn.harbor.util.PlayerManager;
+import xyz.nkomarn.harbor.util.VanishTracker;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.logging.Level;
 
 public class Harbor extends JavaPlugin {
+    private HarborScheduler scheduler;
     private Config config;
     private Checker checker;
     private Messages messages;
     private PlayerManager playerManager;
+    private VanishTracker vanishTracker;
     private Essentials essentials;
+    private TraceRecorder traceRecorder;
     private final MiniMessage miniMessage = MiniMessage.miniMessage();
+    private final HarborMetrics metrics = new HarborMetrics();
+
+    public Harbor() {
+        super();
+    }
+
+    /**
+     * Creates Harbor outside of a server, for the benchmarks which run it against stand-in server objects.
+     */
+    @SuppressWarnings("deprecation")
+    protected Harbor(@NotNull JavaPluginLoader loader, @NotNull PluginDescriptionFile description,
+                     @NotNull File dataFolder, @NotNull File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     public void onEnable() {
         PluginManager pluginManager = getServer().getPluginManager();
 
+        registerMetricsMBean();
+        scheduler = HarborScheduler.create(this);
         config = new Config(this);
+        // The player manager registers the Essentials integration, so look Essentials up first
+        essentials = (Essentials) pluginManager.getPlugin("Essentials");
+        vanishTracker = new VanishTracker(this);
         checker = new Checker(this);
         messages = new Messages(this);
         playerManager = new PlayerManager(this);
-        essentials = (Essentials) pluginManager.getPlugin("Essentials");
 
         Arrays.asList(
                 messages,
                 playerManager,
+                vanishTracker,
+                checker,
+                checker.getSleepIndex(),
                 new BedListener(this)
         ).forEach(listener -> pluginManager.registerEvents(listener, this));
 
         getCommand("harbor").setExecutor(new HarborCommand(this));
         getCommand("forceskip").setExecutor(new ForceSkipCommand(this));
+        updateTraceRecorder();
     }
 
 
 
     @Override
     public void onDisable() {
+        if (traceRecorder != null) {
+            traceRecorder.stop();
+            traceRecorder = null;
+        }
+
         for (World world : getServer().getWorlds()) {
             messages.clearBar(world);
         }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(HarborMetricsBean.getObjectName());
+        } catch (JMException ignored) {
+        }
+    }
+
+    private void registerMetricsMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = HarborMetricsBean.getObjectName();
+
+        try {
+            // Left over by a previous instance after a reload
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+
+            server.registerMBean(new HarborMetricsBean(metrics), name);
+        } catch (JMException e) {
+            getLogger().log(Level.WARNING, "Failed to register the metrics MBean", e);
+        }
+    }
+
+    /**
+     * Starts or stops recording a trace, following the configuration.
+     */
+    public void updateTraceRecorder() {
+        boolean enabled = config.getSettings().isTraceEnabled();
+
+        if (enabled && traceRecorder == null) {
+            try {
+                traceRecorder = TraceRecorder.start(this);
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Failed to start recording a trace", e);
+            }
+        } else if (!enabled && traceRecorder != null) {
+            traceRecorder.stop();
+            traceRecorder = null;
+        }
     }
 
     @NotNull
@@ -61,6 +146,11 @@ public class Harbor extends JavaPlugin {
         return getDescription().getVersion();
     }
 
+    @NotNull
+    public HarborScheduler getHarborScheduler() {
+        return scheduler;
+    }
+
     @NotNull
     public Config getConfiguration() {
         return config;
@@ -86,6 +176,24 @@ public class Harbor extends JavaPlugin {
         return playerManager;
     }
 
+    @NotNull
+    public HarborMetrics getMetrics() {
+        return metrics;
+    }
+
+    @NotNull
+    public VanishTracker getVanishTracker() {
+        return vanishTracker;
+    }
+
+    /**
+     * @return The running trace recorder, wrapped in {@link Optional}, empty unless tracing is enabled.
+     */
+    @NotNull
+    public Optional<TraceRecorder> getTraceRecorder() {
+        return Optional.ofNullable(traceRecorder);
+    }
+
     /**
      * Add an {@link ExclusionProvider} to harbor, so an external plugin can set a player to be excluded from the sleep count
      *
@@ -111,6 +219,20 @@ public class Harbor extends JavaPlugin {
         checker.removeExclusionProvider(provider);
     }
 
+    /**
+     * Tells harbor that the exclusion status of a player may have changed, for use by external plugins whose
+     * {@link ExclusionProvider} is cacheable
+     *
+     * @param player The player whose exclusion status may have changed
+     *
+     * @see ExclusionProvider#isCacheable()
+     */
+    @SuppressWarnings("unused")
+    public void invalidateExclusions(@NotNull Player player) {
+        checker.invalidateExclusions(player);
+        getHarborScheduler().runForEntity(player, () -> checker.getSleepIndex().update(player));
+    }
+
     /**
      * Add an {@link AFKProvider} to harbor, so an external plugin can provide an AFK status to harbor
      *
@@ -135,6 +257,30 @@ public class Harbor extends JavaPlugin {
         playerManager.removeAfkProvider(provider);
     }
 
+    /**
+     * Add a {@link PushAFKProvider} to harbor, so an external plugin can report AFK status changes to harbor
+     *
+     * @param provider An external implementation of a {@link PushAFKProvider}, provided by an implementing plugin
+     *
+     * @see PushAFKProvider
+     * @see PlayerManager#addAfkProvider(PushAFKProvider, LogicType)
+     */
+    @SuppressWarnings("unused")
+    public void addAFKProvider(PushAFKProvider provider, LogicType type) {
+        playerManager.addAfkProvider(provider, type);
+    }
+
+    /**
+     * Removes a {@link PushAFKProvider}
+     * @param provider The provider to remove
+     *
+     * @see #addAFKProvider(PushAFKProvider, LogicType)
+     */
+    @SuppressWarnings("unused")
+    public void removeAFKProvider(PushAFKProvider provider){
+        playerManager.removeAfkProvider(provider);
+    }
+
     /**
      * @return The current instance of Essentials ({@link Essentials}, wrapped in {@link Optional}
      */
@@ -0,0 +1,19 @@
+package xyz.nkomarn.harbor.api;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@link AFKStatusSink} is handed to a {@link PushAFKProvider} when it is registered, and is
+ * what the provider reports AFK status changes of players to
+ */
+public interface AFKStatusSink {
+    /**
+     * Reports the AFK status of a {@link Player}. Reporting the same status again has no effect,
+     * and this may be called from any thread
+     *
+     * @param player The {@link Player} whose status changed
+     * @param afk    If the player is now afk (true) or not (false)
+     */
+    void setAFK(@NotNull Player player, boolean afk);
+}
@@ -18,4 +18,16 @@ public interface ExclusionProvider {
      * @return If the player is excluded (true) or not (false)
      */
     boolean isExcluded(Player player);
+
+    /**
+     * Tells Harbor whether the result of {@link #isExcluded(Player)} may be cached. Harbor re-evaluates cached
+     * results when a player's game mode or world changes, or when a provider is added or removed.
+     * Cacheable providers must call {@link xyz.nkomarn.harbor.Harbor#invalidateExclusions(Player)} whenever
+     * a result changes for any other reason
+     *
+     * @return If the result may be cached (true) or has to be checked every time (false)
+     */
+    default boolean isCacheable() {
+        return false;
+    }
 }
@@ -0,0 +1,40 @@
+package xyz.nkomarn.harbor.api;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.player.PlayerEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Called when Harbor's fallback AFK detection decides that a {@link Player} became AFK, or is no longer AFK.
+ * <p>
+ * The event is called on the global thread. On regionized servers the player must only be touched from its own
+ * region, for example through the player's scheduler.
+ */
+public class HarborAfkStatusChangeEvent extends PlayerEvent {
+    private static final HandlerList HANDLERS = new HandlerList();
+    private final boolean afk;
+
+    public HarborAfkStatusChangeEvent(@NotNull Player player, boolean afk) {
+        super(player);
+        this.afk = afk;
+    }
+
+    /**
+     * @return If the player is now AFK (true) or not (false)
+     */
+    public boolean isAfk() {
+        return afk;
+    }
+
+    @NotNull
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    @NotNull
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
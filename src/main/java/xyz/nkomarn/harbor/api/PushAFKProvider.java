@@ -0,0 +1,25 @@
+package xyz.nkomarn.harbor.api;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@link PushAFKProvider} interface provides a way for an external plugin to tell Harbor
+ * when a Player's AFK status changes, instead of being asked for it by Harbor like an {@link AFKProvider}.
+ * Harbor keeps the combined status of all providers up to date as changes are reported
+ *
+ * @see xyz.nkomarn.harbor.Harbor#addAFKProvider(PushAFKProvider, LogicType)
+ */
+public interface PushAFKProvider {
+    /**
+     * Called when the provider is registered. Players are considered not AFK by this provider
+     * until it reports otherwise through the given sink
+     *
+     * @param sink The {@link AFKStatusSink} to report status changes to
+     */
+    void start(@NotNull AFKStatusSink sink);
+
+    /**
+     * Called when the provider is removed. Reports made to the sink afterwards are ignored
+     */
+    void stop();
+}
@@ -1,15 +1,21 @@
 package xyz.nkomarn.harbor.command;
 
 import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.metrics.HarborMetrics;
 import xyz.nkomarn.harbor.util.Config;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class HarborCommand implements TabExecutor {
 
@@ -32,10 +38,42 @@ public class HarborCommand implements TabExecutor {
 
         if (args[0].equalsIgnoreCase("reload")) {
             config.reload();
+            harbor.getMessages().reload();
+            harbor.getChecker().invalidateExclusions();
+            harbor.updateTraceRecorder();
+
+            // Worlds may have been taken off the blacklist, so have every world evaluated again
+            for (World world : Bukkit.getWorlds()) {
+                harbor.getChecker().wake(world);
+            }
+
             sender.sendMessage(miniMessage.deserialize(config.getPrefix() + "Reloaded configuration."));
             return true;
         }
 
+        if (args[0].equalsIgnoreCase("stats")) {
+            HarborMetrics metrics = harbor.getMetrics();
+
+            if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                metrics.reset();
+                sender.sendMessage(miniMessage.deserialize(config.getPrefix() + "Reset statistics."));
+                return true;
+            }
+
+            long seconds = (System.currentTimeMillis() - metrics.getSince()) / 1000;
+            sender.sendMessage(miniMessage.deserialize(config.getPrefix() + "Statistics of the last " + seconds + " seconds:"));
+
+            for (Map.Entry<String, Number> entry : metrics.snapshot().entrySet()) {
+                Number value = entry.getValue();
+                String formatted = value instanceof Double ? String.format(Locale.ROOT, "%.1f", value.doubleValue()) : value.toString();
+                sender.sendMessage(miniMessage.deserialize("<gray>" + entry.getKey() + ": <white>" + formatted));
+            }
+
+            harbor.getTraceRecorder().ifPresent(recorder -> sender.sendMessage(miniMessage.deserialize("<gray>trace: <white>"
+                    + recorder.getRecords() + " records, " + recorder.getDropped() + " dropped, to " + recorder.getFile().getName())));
+            return true;
+        }
+
         sender.sendMessage(miniMessage.deserialize(config.getPrefix() + config.getString("messages.miscellaneous.unrecognized-command")));
         return true;
     }
@@ -46,10 +84,14 @@ public class HarborCommand implements TabExecutor {
             return null;
         }
 
+        if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
+            return Collections.singletonList("reset");
+        }
+
         if (args.length != 1) {
             return null;
         }
 
-        return Collections.singletonList("reload");
+        return Arrays.asList("reload", "stats");
     }
 }
@@ -2,6 +2,7 @@ package xyz.nkomarn.harbor.listener;
 
 import io.papermc.paper.event.player.AsyncChatEvent;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -11,26 +12,32 @@ import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.provider.DefaultAFKProvider;
+import xyz.nkomarn.harbor.scheduler.HarborScheduler;
+import xyz.nkomarn.harbor.scheduler.HarborTask;
+import xyz.nkomarn.harbor.util.Settings;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 
 public final class AfkListener implements Listener {
     private final DefaultAFKProvider afkProvider;
-    private Queue<AfkPlayer> players;
-    private PlayerMovementChecker movementChecker;
+    private volatile SampleRing players;
+    private HarborTask movementChecker;
+    private volatile PlayerMovementChecker checker;
     private final Harbor harbor;
+    private final HarborScheduler scheduler;
     private boolean status;
 
     public AfkListener(@NotNull DefaultAFKProvider afkProvider) {
         this.afkProvider = afkProvider;
         this.harbor = afkProvider.getHarbor();
+        this.scheduler = harbor.getHarborScheduler();
         harbor.getLogger().info("Initializing fallback AFK detection system. Fallback AFK system is not enabled at this time");
         status = false;
     }
@@ -41,18 +48,23 @@ public final class AfkListener implements Listener {
     public void start() {
         if(!status) {
             status = true;
-            players = new ArrayDeque<>();
-            movementChecker = new PlayerMovementChecker();
+            // Joins and quits can fire on any region thread when regionized, so the ring synchronizes internally
+            SampleRing ring = new SampleRing();
 
-            // Populate the queue with any existing players
-            players.addAll(Bukkit.getOnlinePlayers().stream().map((Function<Player, AfkPlayer>) AfkPlayer::new).collect(Collectors.toSet()));
+            // Populate the ring with any existing players
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                ring.add(player);
+                afkProvider.addPlayer(player);
+            }
+            players = ring;
 
-            // Register listeners after populating the queue
+            // Register listeners after populating the ring
             Bukkit.getServer().getPluginManager().registerEvents(this, harbor);
 
-            // We want every player to get a check every 20 ticks. The runnable smooths out checking a certain
-            // percentage of players over all 20 ticks. Thusly, the runnable must run on every tick
-            movementChecker.runTaskTimer(harbor, 0, 1);
+            // We want every player to get a check every scan period. The runnable smooths out checking a certain
+            // percentage of players over the period. Thusly, the runnable must run on every tick
+            checker = new PlayerMovementChecker();
+            movementChecker = scheduler.runGlobalTimer(checker, 1, 1);
 
             harbor.getLogger().info("Fallback AFK detection system is enabled");
         } else {
@@ -67,6 +79,7 @@ public final class AfkListener implements Listener {
         if(status) {
             status = false;
             movementChecker.cancel();
+            checker = null;
             HandlerList.unregisterAll(this);
             players = null;
             harbor.getLogger().info("Fallback AFK detection system is disabled");
@@ -92,72 +105,265 @@ public final class AfkListener implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onJoin(PlayerJoinEvent event) {
-        players.add(new AfkPlayer(event.getPlayer()));
-        afkProvider.updateActivity(event.getPlayer());
+        players.add(event.getPlayer());
+        afkProvider.addPlayer(event.getPlayer());
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onLeave(PlayerQuitEvent event) {
-        players.remove(new AfkPlayer(event.getPlayer()));
+        players.remove(event.getPlayer().getUniqueId());
         afkProvider.removePlayer(event.getPlayer().getUniqueId());
     }
 
     /**
      * Internal class for handling the task of checking player movement; Is a separate task so that we can cancel and restart it easily
+     * <p>
+     * Every player is visited once per scan period, but only sampled once it is due. Players whose AFK deadline is
+     * far away, such as those that just moved, are due again later, up to the maximum scan period, while players
+     * close to timing out or already AFK are due on every visit.
      */
-    private final class PlayerMovementChecker extends BukkitRunnable {
+    private final class PlayerMovementChecker implements Runnable {
+        private static final long NANOS_PER_TICK = 50_000_000L;
+
         private double checksToMake = 0;
+        private long tick;
+        private long passStart;
+        private long passes;
+        private int samples;
+
         @Override
         public void run() {
-            if(players.isEmpty()){
+            long scanStarted = System.nanoTime();
+            scan();
+            harbor.getMetrics().getAfkScan().recordSince(scanStarted);
+        }
+
+        private void scan() {
+            long now = ++tick;
+            if (now % 20 == 0) {
+                harbor.getMetrics().getAfkSamplesPerSecond().set(samples);
+                samples = 0;
+            }
+
+            SampleRing ring = players;
+            if (ring == null || ring.isEmpty()) {
                 checksToMake = 0;
                 return;
             }
 
-            // We want every player to get a check every 20 ticks. Therefore we check 1/20th of the players
-            for (checksToMake += players.size() / 20D; checksToMake > 0 && !players.isEmpty(); checksToMake--) {
-                AfkPlayer afkPlayer = players.poll();
-                if (afkPlayer.changed()) {
-                    afkProvider.updateActivity(afkPlayer.player);
+            Settings settings = harbor.getConfiguration().getSettings();
+            double movementThreshold = settings.getAfkFallbackMovementThreshold();
+            float rotationThreshold = settings.getAfkFallbackRotationThreshold();
+            int period = settings.getAfkFallbackScanPeriod();
+            int maxPeriod = settings.getAfkFallbackScanMaxPeriod();
+            long budget = settings.getAfkFallbackScanBudgetNanos();
+            long started = budget > 0 ? System.nanoTime() : 0;
+
+            // Every player is visited once per period, so a share of the players is visited every tick
+            checksToMake = Math.min(checksToMake + ring.size() / (double) period, ring.size());
+            for (; checksToMake > 0; checksToMake--) {
+                if (budget > 0 && System.nanoTime() - started >= budget) {
+                    // The remaining checks carry over to the next tick
+                    harbor.getMetrics().getAfkBudgetOverruns().increment();
+                    break;
                 }
-                players.add(afkPlayer);
+
+                Player player = ring.next(now);
+                if (ring.getPasses() != passes) {
+                    passes = ring.getPasses();
+                    harbor.getMetrics().getAfkLastPassTicks().set(now - passStart);
+                    passStart = now;
+                }
+
+                if (player == null) {
+                    // Not due yet
+                    continue;
+                }
+
+                samples++;
+                harbor.getMetrics().getAfkSamples().increment();
+                if (!scheduler.isRegionized()) {
+                    // Single threaded, so the ring's location can be reused for every sample
+                    sample(ring, player, player.getLocation(ring.location), movementThreshold, rotationThreshold,
+                            now, period, maxPeriod);
+                    continue;
+                }
+
+                // Locations must be read on the thread that owns the player
+                scheduler.runForEntity(player, () -> sample(ring, player, player.getLocation(), movementThreshold,
+                        rotationThreshold, now, period, maxPeriod));
             }
         }
+
+        private void sample(@NotNull SampleRing ring, @NotNull Player player, @NotNull Location location,
+                            double movementThreshold, float rotationThreshold, long now, int period, int maxPeriod) {
+            if (ring.sample(player, location, movementThreshold, rotationThreshold)) {
+                afkProvider.updateActivity(player);
+            }
+
+            long interval = period;
+            if (maxPeriod > period) {
+                // Movement only has to be seen before the deadline, so sample at the latest halfway there
+                long remaining = afkProvider.nanosUntilAfk(player);
+                if (remaining > 0) {
+                    interval = Math.max(period, Math.min(maxPeriod, remaining / 2 / NANOS_PER_TICK));
+                }
+            }
+
+            ring.setNextSample(player, now + interval);
+        }
     }
 
+    /**
+     * Dense, index addressed storage of the last sampled position of every online player. Positions are kept as
+     * primitives in parallel arrays so sampling doesn't allocate, and players are removed in constant time by moving
+     * the last entry into the freed slot.
+     */
+    private static final class SampleRing {
+        private final Map<UUID, Integer> indices = new HashMap<>();
+        private final Location location = new Location(null, 0, 0, 0);
+        private Player[] players = new Player[64];
+        private double[] x = new double[64];
+        private double[] y = new double[64];
+        private double[] z = new double[64];
+        private float[] yaw = new float[64];
+        private float[] pitch = new float[64];
+        private long[] nextSample = new long[64];
+        private int size;
+        private int cursor;
+        private long passes;
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
 
+        synchronized void add(@NotNull Player player) {
+            if (indices.containsKey(player.getUniqueId())) {
+                return;
+            }
 
-    private static final class AfkPlayer {
-        private final Player player;
-        private int locationHash;
+            if (size == players.length) {
+                grow();
+            }
 
-        public AfkPlayer(Player player) {
-            this.player = player;
-            locationHash = player.getEyeLocation().hashCode();
+            int index = size++;
+            players[index] = player;
+            nextSample[index] = 0;
+            indices.put(player.getUniqueId(), index);
+            store(index, player.getLocation(location));
+        }
+
+        synchronized void remove(@NotNull UUID uuid) {
+            Integer removed = indices.remove(uuid);
+            if (removed == null) {
+                return;
+            }
+
+            int index = removed;
+            int last = --size;
+
+            if (index != last) {
+                players[index] = players[last];
+                x[index] = x[last];
+                y[index] = y[last];
+                z[index] = z[last];
+                yaw[index] = yaw[last];
+                pitch[index] = pitch[last];
+                nextSample[index] = nextSample[last];
+                indices.put(players[index].getUniqueId(), index);
+            }
+
+            players[last] = null;
         }
 
         /**
-         * Check if the player changed its position since the last check
+         * Moves on to the next player in the ring.
+         *
+         * @param tick The current tick of the movement checker.
          *
-         * @return true if the position changed
+         * @return The next player if it is due to be sampled, otherwise null.
          */
-        boolean changed() {
-            int previousLocation = locationHash;
-            locationHash = player.getEyeLocation().hashCode();
-            return previousLocation != locationHash;
+        @Nullable
+        synchronized Player next(long tick) {
+            if (size == 0) {
+                return null;
+            }
+
+            if (cursor >= size) {
+                cursor = 0;
+                passes++;
+            }
+
+            int index = cursor++;
+            return nextSample[index] <= tick ? players[index] : null;
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            AfkPlayer afkPlayer = (AfkPlayer) o;
-            return player.getUniqueId().equals(afkPlayer.player.getUniqueId());
+        /**
+         * @return How often the ring was fully gone around.
+         */
+        synchronized long getPasses() {
+            return passes;
         }
 
-        @Override
-        public int hashCode() {
-            return player.getUniqueId().hashCode();
+        synchronized void setNextSample(@NotNull Player player, long tick) {
+            Integer index = indices.get(player.getUniqueId());
+            if (index != null) {
+                nextSample[index] = tick;
+            }
+        }
+
+        /**
+         * Compares the given location with the last stored position of the player. The stored position is only moved
+         * once the player went past one of the thresholds, so slow drifting eventually counts as well.
+         *
+         * @return true if the player moved or looked around further than the thresholds allow
+         */
+        synchronized boolean sample(@NotNull Player player, @NotNull Location current,
+                                    double movementThreshold, float rotationThreshold) {
+            Integer boxed = indices.get(player.getUniqueId());
+            if (boxed == null) {
+                return false;
+            }
+
+            int index = boxed;
+            double dx = current.getX() - x[index];
+            double dy = current.getY() - y[index];
+            double dz = current.getZ() - z[index];
+            float dyaw = Math.abs(current.getYaw() - yaw[index]) % 360F;
+            float dpitch = Math.abs(current.getPitch() - pitch[index]);
+
+            boolean moved = dx * dx + dy * dy + dz * dz > movementThreshold * movementThreshold
+                    || Math.min(dyaw, 360F - dyaw) > rotationThreshold
+                    || dpitch > rotationThreshold;
+
+            if (moved) {
+                store(index, current);
+            }
+
+            return moved;
+        }
+
+        private void store(int index, @NotNull Location current) {
+            x[index] = current.getX();
+            y[index] = current.getY();
+            z[index] = current.getZ();
+            yaw[index] = current.getYaw();
+            pitch[index] = current.getPitch();
+        }
+
+        private void grow() {
+            int capacity = players.length * 2;
+            players = Arrays.copyOf(players, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            z = Arrays.copyOf(z, capacity);
+            yaw = Arrays.copyOf(yaw, capacity);
+            pitch = Arrays.copyOf(pitch, capacity);
+            nextSample = Arrays.copyOf(nextSample, capacity);
         }
     }
 }
@@ -1,6 +1,5 @@
 package xyz.nkomarn.harbor.listener;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -10,17 +9,18 @@ import org.bukkit.event.player.PlayerBedLeaveEvent;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.util.PlayerManager;
-
-import java.time.Instant;
+import xyz.nkomarn.harbor.util.SleepIndex;
 
 public class BedListener implements Listener {
 
     private final Harbor harbor;
     private final PlayerManager playerManager;
+    private final SleepIndex sleepIndex;
 
     public BedListener(@NotNull Harbor harbor) {
         this.harbor = harbor;
         this.playerManager = harbor.getPlayerManager();
+        this.sleepIndex = harbor.getChecker().getSleepIndex();
     }
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
@@ -30,16 +30,23 @@ public class BedListener implements Listener {
         }
 
         Player player = event.getPlayer();
+        // Have the world evaluated even if the night wasn't expected to start in it yet
+        harbor.getChecker().wake(player.getWorld());
 
-        Bukkit.getScheduler().runTaskLater(harbor, () -> {
-            playerManager.setCooldown(player, Instant.now());
+        // The player is only put to sleep after the event, so update the index on the next tick
+        harbor.getHarborScheduler().runForEntityLater(player, () -> {
+            playerManager.resetUiState(player);
+            sleepIndex.update(player);
         }, 1);
     }
 
     @EventHandler(ignoreCancelled = true)
     public void onBedLeave(PlayerBedLeaveEvent event) {
-        Bukkit.getScheduler().runTaskLater(harbor, () -> {
-            playerManager.setCooldown(event.getPlayer(), Instant.now());
+        Player player = event.getPlayer();
+
+        harbor.getHarborScheduler().runForEntityLater(player, () -> {
+            playerManager.resetUiState(player);
+            sleepIndex.update(player);
         }, 1);
     }
 }
@@ -0,0 +1,236 @@
+package xyz.nkomarn.harbor.metrics;
+
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the work Harbor does. Every metric is a field, so recording one is an
+ * adder increment without any lookups; per-world metrics are looked up by the world's unique id.
+ */
+public final class HarborMetrics {
+    private final LatencyHistogram checkerCapture = new LatencyHistogram();
+    private final LatencyHistogram checkerEvaluate = new LatencyHistogram();
+    private final LatencyHistogram checkerApply = new LatencyHistogram();
+    private final LatencyHistogram afkScan = new LatencyHistogram();
+    private final LongAdder playersScanned = new LongAdder();
+    private final LongAdder providerCalls = new LongAdder();
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder renderCacheHits = new LongAdder();
+    private final LongAdder titlesSent = new LongAdder();
+    private final LongAdder titlesSkipped = new LongAdder();
+    private final LongAdder bossBarUpdates = new LongAdder();
+    private final LongAdder afkSamples = new LongAdder();
+    private final LongAdder afkBudgetOverruns = new LongAdder();
+    private final AtomicLong afkSamplesPerSecond = new AtomicLong();
+    private final AtomicLong afkLastPassTicks = new AtomicLong();
+    private final Map<UUID, WorldMetrics> worlds = new ConcurrentHashMap<>();
+    private volatile long since = System.currentTimeMillis();
+
+    /**
+     * @return Time spent capturing the sleep state of all worlds per checker pass, on the global thread.
+     */
+    public LatencyHistogram getCheckerCapture() {
+        return checkerCapture;
+    }
+
+    /**
+     * @return Time spent evaluating captured sleep states per checker pass, on the global thread.
+     */
+    public LatencyHistogram getCheckerEvaluate() {
+        return checkerEvaluate;
+    }
+
+    /**
+     * @return Time spent applying evaluated sleep states per checker pass, on the global thread.
+     */
+    public LatencyHistogram getCheckerApply() {
+        return checkerApply;
+    }
+
+    /**
+     * @return Time spent per tick by the fallback AFK movement scan.
+     */
+    public LatencyHistogram getAfkScan() {
+        return afkScan;
+    }
+
+    public LongAdder getPlayersScanned() {
+        return playersScanned;
+    }
+
+    /**
+     * @return How often an exclusion provider was asked about a player.
+     */
+    public LongAdder getProviderCalls() {
+        return providerCalls;
+    }
+
+    /**
+     * @return How often a message had to be parsed.
+     */
+    public LongAdder getRenders() {
+        return renders;
+    }
+
+    /**
+     * @return How often a previously parsed message could be reused.
+     */
+    public LongAdder getRenderCacheHits() {
+        return renderCacheHits;
+    }
+
+    public LongAdder getTitlesSent() {
+        return titlesSent;
+    }
+
+    /**
+     * @return How many queued titles weren't sent because they were already on screen.
+     */
+    public LongAdder getTitlesSkipped() {
+        return titlesSkipped;
+    }
+
+    /**
+     * @return How many bossbar changes were sent.
+     */
+    public LongAdder getBossBarUpdates() {
+        return bossBarUpdates;
+    }
+
+    public LongAdder getAfkSamples() {
+        return afkSamples;
+    }
+
+    /**
+     * @return How often the per-tick budget of the fallback AFK scan ran out before all scheduled checks were made.
+     */
+    public LongAdder getAfkBudgetOverruns() {
+        return afkBudgetOverruns;
+    }
+
+    /**
+     * @return How many players the fallback AFK scan sampled during the last second.
+     */
+    public AtomicLong getAfkSamplesPerSecond() {
+        return afkSamplesPerSecond;
+    }
+
+    /**
+     * @return How many ticks the last full pass of the fallback AFK scan over all online players took.
+     */
+    public AtomicLong getAfkLastPassTicks() {
+        return afkLastPassTicks;
+    }
+
+    /**
+     * Returns the metrics of the given world, creating them if they don't exist yet.
+     *
+     * @param world The world.
+     *
+     * @return The metrics of the world.
+     */
+    @NotNull
+    public WorldMetrics getWorld(@NotNull World world) {
+        WorldMetrics metrics = worlds.get(world.getUID());
+        return metrics != null ? metrics : worlds.computeIfAbsent(world.getUID(), WorldMetrics::new);
+    }
+
+    /**
+     * Drops the metrics of a world that was unloaded.
+     *
+     * @param world The unloaded world.
+     */
+    public void removeWorld(@NotNull World world) {
+        worlds.remove(world.getUID());
+    }
+
+    @NotNull
+    public Collection<WorldMetrics> getWorlds() {
+        return Collections.unmodifiableCollection(worlds.values());
+    }
+
+    /**
+     * @return The time in milliseconds since the epoch from which on metrics were recorded.
+     */
+    public long getSince() {
+        return since;
+    }
+
+    /**
+     * Drops everything recorded so far.
+     */
+    public void reset() {
+        checkerCapture.reset();
+        checkerEvaluate.reset();
+        checkerApply.reset();
+        afkScan.reset();
+        playersScanned.reset();
+        providerCalls.reset();
+        renders.reset();
+        renderCacheHits.reset();
+        titlesSent.reset();
+        titlesSkipped.reset();
+        bossBarUpdates.reset();
+        afkSamples.reset();
+        afkBudgetOverruns.reset();
+        // The AFK scan rates describe the current state rather than what was recorded, so they're kept
+        worlds.values().forEach(WorldMetrics::reset);
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * Flattens all metrics into named values. Histograms are reported as their count, mean, 50th and 99th
+     * percentile and maximum, in microseconds. Per-world metrics are named after the unique id of the world.
+     *
+     * @return The metrics by name, in a stable order.
+     */
+    @NotNull
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        histogram(values, "checker.capture", checkerCapture);
+        histogram(values, "checker.evaluate", checkerEvaluate);
+        histogram(values, "checker.apply", checkerApply);
+        values.put("checker.players-scanned", playersScanned.sum());
+        values.put("exclusions.provider-calls", providerCalls.sum());
+        values.put("messages.renders", renders.sum());
+        values.put("messages.render-cache-hits", renderCacheHits.sum());
+        values.put("messages.titles-sent", titlesSent.sum());
+        values.put("messages.titles-skipped", titlesSkipped.sum());
+        values.put("messages.bossbar-updates", bossBarUpdates.sum());
+        histogram(values, "afk.scan", afkScan);
+        values.put("afk.samples", afkSamples.sum());
+        values.put("afk.samples-per-second", afkSamplesPerSecond.get());
+        values.put("afk.last-pass-ticks", afkLastPassTicks.get());
+        values.put("afk.budget-overruns", afkBudgetOverruns.sum());
+
+        for (WorldMetrics world : worlds.values()) {
+            // Names may contain dots and be reused by another world after an unload, ids can't
+            String prefix = "world." + world.getUid() + ".";
+            histogram(values, prefix + "capture", world.getCapture());
+            histogram(values, prefix + "accelerate", world.getAccelerate());
+            values.put(prefix + "players-scanned", world.getPlayersScanned().sum());
+            values.put(prefix + "time-updates", world.getTimeUpdates().sum());
+            values.put(prefix + "skips-started", world.getSkipsStarted().sum());
+            values.put(prefix + "skips-completed", world.getSkipsCompleted().sum());
+        }
+
+        return values;
+    }
+
+    private static void histogram(@NotNull Map<String, Number> values, @NotNull String name, @NotNull LatencyHistogram histogram) {
+        values.put(name + ".count", histogram.getCount());
+        values.put(name + ".mean-us", histogram.getMeanNanos() / 1000D);
+        values.put(name + ".p50-us", histogram.getPercentileNanos(0.5) / 1000D);
+        values.put(name + ".p99-us", histogram.getPercentileNanos(0.99) / 1000D);
+        values.put(name + ".max-us", histogram.getMaxNanos() / 1000D);
+    }
+}
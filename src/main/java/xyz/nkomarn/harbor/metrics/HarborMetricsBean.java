@@ -0,0 +1,103 @@
+package xyz.nkomarn.harbor.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.util.Map;
+
+/**
+ * Exposes {@link HarborMetrics} over JMX. Every value of {@link HarborMetrics#snapshot()} is a read-only
+ * attribute, and a {@code reset} operation clears the metrics.
+ */
+public final class HarborMetricsBean implements DynamicMBean {
+    private final HarborMetrics metrics;
+
+    public HarborMetricsBean(@NotNull HarborMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The name Harbor registers its metrics under.
+     */
+    @NotNull
+    public static ObjectName getObjectName() {
+        try {
+            return new ObjectName("xyz.nkomarn.harbor:type=Metrics");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = metrics.snapshot().get(attribute);
+
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Harbor metrics are read-only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Number> snapshot = metrics.snapshot();
+        AttributeList list = new AttributeList();
+
+        for (String attribute : attributes) {
+            Number value = snapshot.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            metrics.reset();
+            return null;
+        }
+
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Number> snapshot = metrics.snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+        int i = 0;
+
+        for (Map.Entry<String, Number> entry : snapshot.entrySet()) {
+            attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                    entry.getKey(), true, false, false);
+        }
+
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears all metrics", null, "void",
+                MBeanOperationInfo.ACTION);
+
+        return new MBeanInfo(HarborMetrics.class.getName(), "Harbor metrics", attributes, null,
+                new MBeanOperationInfo[]{reset}, null);
+    }
+}
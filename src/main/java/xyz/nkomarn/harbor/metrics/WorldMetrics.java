@@ -0,0 +1,70 @@
+package xyz.nkomarn.harbor.metrics;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics Harbor keeps for a single world.
+ */
+public final class WorldMetrics {
+    private final UUID uid;
+    private final LatencyHistogram capture = new LatencyHistogram();
+    private final LatencyHistogram accelerate = new LatencyHistogram();
+    private final LongAdder playersScanned = new LongAdder();
+    private final LongAdder timeUpdates = new LongAdder();
+    private final LongAdder skipsStarted = new LongAdder();
+    private final LongAdder skipsCompleted = new LongAdder();
+
+    WorldMetrics(UUID uid) {
+        this.uid = uid;
+    }
+
+    /**
+     * @return The unique id of the world, which the metrics are reported under.
+     */
+    public UUID getUid() {
+        return uid;
+    }
+
+    /**
+     * @return Time spent capturing the sleep state of the world in checker passes.
+     */
+    public LatencyHistogram getCapture() {
+        return capture;
+    }
+
+    /**
+     * @return Time spent per tick accelerating the night of the world.
+     */
+    public LatencyHistogram getAccelerate() {
+        return accelerate;
+    }
+
+    public LongAdder getPlayersScanned() {
+        return playersScanned;
+    }
+
+    /**
+     * @return How often the time of the world was set while accelerating the night.
+     */
+    public LongAdder getTimeUpdates() {
+        return timeUpdates;
+    }
+
+    public LongAdder getSkipsStarted() {
+        return skipsStarted;
+    }
+
+    public LongAdder getSkipsCompleted() {
+        return skipsCompleted;
+    }
+
+    void reset() {
+        capture.reset();
+        accelerate.reset();
+        playersScanned.reset();
+        timeUpdates.reset();
+        skipsStarted.reset();
+        skipsCompleted.reset();
+    }
+}
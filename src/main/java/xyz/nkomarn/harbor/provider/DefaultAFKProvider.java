@@ -3,57 +3,140 @@ package xyz.nkomarn.harbor.provider;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Listener;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.api.AFKProvider;
+import xyz.nkomarn.harbor.api.HarborAfkStatusChangeEvent;
 import xyz.nkomarn.harbor.listener.AfkListener;
+import xyz.nkomarn.harbor.scheduler.HarborTask;
+import xyz.nkomarn.harbor.util.Settings;
+import xyz.nkomarn.harbor.util.TimingWheel;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 /**
  * The default AFK provider, which should be disabled if any others are registered
+ * <p>
+ * Every tracked player has an AFK deadline in a {@link TimingWheel}. Once it passes, the player is flagged as AFK
+ * and a {@link HarborAfkStatusChangeEvent} is called; the next activity clears the flag and calls it again.
  */
 public final class DefaultAFKProvider implements AFKProvider, Listener {
+    /**
+     * Activity within the same bucket of time is only recorded once, so spamming clicks doesn't write on every event
+     */
+    private static final long ACTIVITY_BUCKET_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final boolean enabled;
-    private Map<UUID, Instant> playerActivity;
+    private final Map<UUID, ActivitySlot> playerActivity;
+    private final Queue<ActivitySlot> pending;
+    private TimingWheel<ActivitySlot> deadlines;
+    private HarborTask expiryTask;
     private final AfkListener listener;
-    private final int timeout;
+    private final long timeoutNanos;
     private final Harbor harbor;
 
     public DefaultAFKProvider(@NotNull Harbor harbor) {
         this.harbor = harbor;
-        if (enabled = (harbor.getConfig().getBoolean("afk-detection.fallback-enabled", true))) {
-            timeout = harbor.getConfig().getInt("afk-detection.fallback-timeout", 15);
+        // Chat is handled off the main thread, so activity is written concurrently with reads
+        this.playerActivity = new ConcurrentHashMap<>();
+        this.pending = new ConcurrentLinkedQueue<>();
+        Settings settings = harbor.getConfiguration().getSettings();
+        if (enabled = settings.isAfkFallbackEnabled()) {
+            timeoutNanos = TimeUnit.MINUTES.toNanos(settings.getAfkFallbackTimeout());
             listener = new AfkListener(this);
             enableListeners();
         } else {
             harbor.getLogger().info("Not registering fallback AFK detection system.");
             listener = null;
-            timeout = -1;
+            timeoutNanos = -1;
         }
     }
 
     @Override
     public boolean isAFK(Player player) {
-        if (!enabled || !playerActivity.containsKey(player.getUniqueId())) {
+        if (!enabled) {
             return false;
         }
 
-        long minutes = playerActivity.get(player.getUniqueId()).until(Instant.now(), ChronoUnit.MINUTES);
-        return minutes >= timeout;
+        ActivitySlot slot = playerActivity.get(player.getUniqueId());
+        return slot != null && slot.afk.get();
     }
 
     /**
-     * Sets the given player's last activity to the current timestamp.
+     * Gets the time left until the given player is considered AFK.
+     *
+     * @param player The player to check.
+     *
+     * @return The time left in nanoseconds, 0 if the player is already AFK, or {@link Long#MAX_VALUE} if the player
+     * isn't tracked.
+     */
+    public long nanosUntilAfk(@NotNull Player player) {
+        ActivitySlot slot = playerActivity.get(player.getUniqueId());
+        if (!enabled || slot == null) {
+            return Long.MAX_VALUE;
+        }
+
+        if (slot.afk.get()) {
+            return 0;
+        }
+
+        return Math.max(0, slot.lastActivity + timeoutNanos - System.nanoTime());
+    }
+
+    /**
+     * @return The fallback AFK listener, or null if the fallback detection is disabled in the configuration.
+     */
+    @Nullable
+    public AfkListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Starts tracking the activity of the given player, counting from now.
+     *
+     * @param player The player to track.
+     */
+    public void addPlayer(@NotNull Player player) {
+        ActivitySlot slot = new ActivitySlot(player, System.nanoTime());
+        ActivitySlot previous = playerActivity.put(player.getUniqueId(), slot);
+        if (previous != null) {
+            previous.removed = true;
+        }
+
+        pending.add(slot);
+    }
+
+    /**
+     * Sets the given player's last activity to the current timestamp. Players that aren't tracked are ignored.
      *
      * @param player The player to update.
      */
     public void updateActivity(@NotNull Player player) {
-        playerActivity.put(player.getUniqueId(), Instant.now());
+        ActivitySlot slot = playerActivity.get(player.getUniqueId());
+        if (slot == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (slot.afk.get() && slot.afk.compareAndSet(true, false)) {
+            // Back from being AFK; the deadline is scheduled again and the event fired with the next tick
+            slot.lastActivity = now;
+            slot.returned = true;
+            pending.add(slot);
+            return;
+        }
+
+        // Racing writers all store a current timestamp, so whichever write lands last is just as good
+        if (now - slot.lastActivity >= ACTIVITY_BUCKET_NANOS) {
+            slot.lastActivity = now;
+        }
     }
 
 
@@ -61,10 +144,13 @@ public final class DefaultAFKProvider implements AFKProvider, Listener {
      * Enables Harbor's fallback listeners for AFK detection if other AFKProviders are not present.
      */
     public void enableListeners() {
-        if (enabled) {
+        if (enabled && expiryTask == null) {
             harbor.getLogger().log(Level.FINE, "Enabling listeners for Default AFK Provider");
-            playerActivity = new HashMap<>();
+            playerActivity.clear();
+            pending.clear();
+            deadlines = new TimingWheel<>(ACTIVITY_BUCKET_NANOS, timeoutNanos, System.nanoTime());
             listener.start();
+            expiryTask = harbor.getHarborScheduler().runGlobalTimer(this::processDeadlines, 1, 20);
         }
     }
 
@@ -72,20 +158,109 @@ public final class DefaultAFKProvider implements AFKProvider, Listener {
      * Disables Harbor's fallback listeners for AFK detection if other AFKProviders are present.
      */
     public void disableListeners() {
-        if (enabled) {
+        if (enabled && expiryTask != null) {
             harbor.getLogger().log(Level.FINE, "Disabling listeners for Default AFK Provider");
+            expiryTask.cancel();
+            expiryTask = null;
             listener.stop();
-            playerActivity = null;
+            playerActivity.clear();
+            pending.clear();
+            deadlines = null;
         }
     }
 
 
     public void removePlayer(UUID uniqueId) {
-        playerActivity.remove(uniqueId);
+        ActivitySlot slot = playerActivity.remove(uniqueId);
+        if (slot != null) {
+            slot.removed = true;
+        }
     }
 
     @NotNull
     public Harbor getHarbor() {
         return harbor;
     }
+
+    /**
+     * Schedules the deadlines of new and returning players, then flips every player whose deadline passed to AFK.
+     * Runs on the global thread, which is the only one touching the timing wheel.
+     */
+    private void processDeadlines() {
+        TimingWheel<ActivitySlot> wheel = deadlines;
+        if (wheel == null) {
+            return;
+        }
+
+        ActivitySlot slot;
+        while ((slot = pending.poll()) != null) {
+            if (slot.removed) {
+                continue;
+            }
+
+            if (slot.returned) {
+                slot.returned = false;
+
+                // Activity can flip the flag back before the AFK event was called, in which case there's nothing to undo
+                if (slot.published) {
+                    slot.published = false;
+                    fireStatusChange(slot.player, false);
+                }
+            }
+
+            wheel.schedule(slot, slot.lastActivity + timeoutNanos);
+        }
+
+        long now = System.nanoTime();
+        wheel.advance(now, expired -> {
+            if (expired.removed) {
+                return;
+            }
+
+            long deadline = expired.lastActivity + timeoutNanos;
+            if (now - deadline < 0) {
+                // There was activity since the deadline was scheduled
+                wheel.schedule(expired, deadline);
+                return;
+            }
+
+            if (!expired.afk.compareAndSet(false, true)) {
+                return;
+            }
+
+            if (System.nanoTime() - expired.lastActivity < timeoutNanos) {
+                // Activity raced the transition; if it already flipped the flag back it also queued the slot
+                if (expired.afk.compareAndSet(true, false)) {
+                    wheel.schedule(expired, expired.lastActivity + timeoutNanos);
+                }
+                return;
+            }
+
+            expired.published = true;
+            fireStatusChange(expired.player, true);
+        });
+    }
+
+    private void fireStatusChange(@NotNull Player player, boolean afk) {
+        harbor.getServer().getPluginManager().callEvent(new HarborAfkStatusChangeEvent(player, afk));
+    }
+
+    /**
+     * The last activity of a single player as a monotonic timestamp, along with its AFK state
+     */
+    private static final class ActivitySlot {
+        private final Player player;
+        private final AtomicBoolean afk;
+        private volatile long lastActivity;
+        private volatile boolean returned;
+        private volatile boolean removed;
+        // Whether the AFK event was called for the current AFK period; only touched on the global thread
+        private boolean published;
+
+        private ActivitySlot(@NotNull Player player, long lastActivity) {
+            this.player = player;
+            this.afk = new AtomicBoolean();
+            this.lastActivity = lastActivity;
+        }
+    }
 }
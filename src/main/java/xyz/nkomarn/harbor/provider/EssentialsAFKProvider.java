@@ -2,18 +2,32 @@ package xyz.nkomarn.harbor.provider;
 
 import com.earth2me.essentials.Essentials;
 import com.earth2me.essentials.User;
+import net.ess3.api.events.AfkStatusChangeEvent;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
-import xyz.nkomarn.harbor.api.AFKProvider;
+import xyz.nkomarn.harbor.api.AFKStatusSink;
+import xyz.nkomarn.harbor.api.PushAFKProvider;
 
 /**
- * An {@link AFKProvider} that uses Essentials; can be used as an example of how external
- * plugins can implement an {@link AFKProvider}
+ * A {@link PushAFKProvider} that uses Essentials; can be used as an example of how external
+ * plugins can implement a {@link PushAFKProvider}
+ * <p>
+ * The status of every player is read from Essentials once when they join, and afterwards only
+ * updated from Essentials' {@link AfkStatusChangeEvent}. Essentials versions without the event
+ * are polled instead.
  */
-public final class EssentialsAFKProvider implements AFKProvider {
+public final class EssentialsAFKProvider implements PushAFKProvider {
     private final Harbor harbor;
     private final Essentials essentials;
+    private Listener listener;
+    private PollingAFKProviderAdapter poller;
 
     public EssentialsAFKProvider(@NotNull Harbor harbor, @NotNull Essentials essentials) {
         this.harbor = harbor;
@@ -21,12 +35,76 @@ public final class EssentialsAFKProvider implements AFKProvider {
     }
 
     @Override
-    public boolean isAFK(Player player) {
-        if(harbor.getConfig().getBoolean("afk-detection.essentials-enabled", true)) {
-            User user = essentials.getUser(player);
-            return user != null && user.isAfk();
-        } else {
+    public void start(@NotNull AFKStatusSink sink) {
+        if (!isEventAvailable()) {
+            harbor.getLogger().info("Essentials doesn't provide AFK status events - polling Essentials instead");
+            poller = new PollingAFKProviderAdapter(harbor, this::isAFK);
+            poller.start(sink);
+            return;
+        }
+
+        listener = new StatusListener(sink);
+        Bukkit.getServer().getPluginManager().registerEvents(listener, harbor);
+
+        // Seed the status of players that are already online (i.e. after a reload)
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            harbor.getHarborScheduler().runForEntity(player, () -> sink.setAFK(player, isAFK(player)));
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (listener != null) {
+            HandlerList.unregisterAll(listener);
+            listener = null;
+        }
+
+        if (poller != null) {
+            poller.stop();
+            poller = null;
+        }
+    }
+
+    /**
+     * Asks Essentials whether a player is AFK. Only used when a player joins, or when polling.
+     */
+    private boolean isAFK(@NotNull Player player) {
+        if (!harbor.getConfiguration().getSettings().isAfkEssentialsEnabled()) {
             return false;
         }
+
+        User user = essentials.getUser(player);
+        return user != null && user.isAfk();
+    }
+
+    private static boolean isEventAvailable() {
+        try {
+            Class.forName("net.ess3.api.events.AfkStatusChangeEvent");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Only loaded once the event is known to exist in the installed Essentials version
+     */
+    private final class StatusListener implements Listener {
+        private final AFKStatusSink sink;
+
+        private StatusListener(@NotNull AFKStatusSink sink) {
+            this.sink = sink;
+        }
+
+        @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+        public void onAfkStatusChange(AfkStatusChangeEvent event) {
+            Player player = event.getAffected().getBase();
+            sink.setAFK(player, event.getValue() && harbor.getConfiguration().getSettings().isAfkEssentialsEnabled());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onJoin(PlayerJoinEvent event) {
+            sink.setAFK(event.getPlayer(), isAFK(event.getPlayer()));
+        }
     }
 }
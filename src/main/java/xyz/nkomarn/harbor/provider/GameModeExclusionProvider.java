@@ -17,6 +17,11 @@ public final class GameModeExclusionProvider implements ExclusionProvider {
 
     @Override
     public boolean isExcluded(Player player) {
-        return harbor.getConfig().getBoolean("exclusions.exclude-" + player.getGameMode().toString().toLowerCase(), false);
+        return harbor.getConfiguration().getSettings().getExcludedGameModes().contains(player.getGameMode());
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
     }
 }
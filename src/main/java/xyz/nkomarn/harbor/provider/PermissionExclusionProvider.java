@@ -0,0 +1,22 @@
+package xyz.nkomarn.harbor.provider;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.api.ExclusionProvider;
+
+/**
+ * A class-based {@link ExclusionProvider} which excludes players with the {@code harbor.ignored} permission
+ */
+public final class PermissionExclusionProvider implements ExclusionProvider {
+    private final Harbor harbor;
+
+    public PermissionExclusionProvider(@NotNull Harbor harbor) {
+        this.harbor = harbor;
+    }
+
+    @Override
+    public boolean isExcluded(Player player) {
+        return harbor.getConfiguration().getSettings().isExcludeIgnoredPermission() && player.hasPermission("harbor.ignored");
+    }
+}
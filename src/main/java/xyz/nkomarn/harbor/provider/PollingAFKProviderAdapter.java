@@ -0,0 +1,60 @@
+package xyz.nkomarn.harbor.provider;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.api.AFKProvider;
+import xyz.nkomarn.harbor.api.AFKStatusSink;
+import xyz.nkomarn.harbor.api.PushAFKProvider;
+import xyz.nkomarn.harbor.scheduler.HarborScheduler;
+import xyz.nkomarn.harbor.scheduler.HarborTask;
+
+/**
+ * Adapts an {@link AFKProvider} to the {@link PushAFKProvider} contract by asking it for the status
+ * of every online player once per second and reporting the results
+ */
+public final class PollingAFKProviderAdapter implements PushAFKProvider {
+    private static final long POLL_PERIOD = 20;
+
+    private final HarborScheduler scheduler;
+    private final AFKProvider provider;
+    private HarborTask task;
+
+    public PollingAFKProviderAdapter(@NotNull Harbor harbor, @NotNull AFKProvider provider) {
+        this.scheduler = harbor.getHarborScheduler();
+        this.provider = provider;
+    }
+
+    @Override
+    public void start(@NotNull AFKStatusSink sink) {
+        task = scheduler.runGlobalTimer(() -> {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (!scheduler.isRegionized()) {
+                    // Already on the thread that owns every player, so there's no need for a task per player
+                    sink.setAFK(player, provider.isAFK(player));
+                    continue;
+                }
+
+                // Providers may expect to be asked on the thread that owns the player
+                scheduler.runForEntity(player, () -> sink.setAFK(player, provider.isAFK(player)));
+            }
+        }, 1, POLL_PERIOD);
+    }
+
+    @Override
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * @return The adapted provider
+     */
+    @NotNull
+    public AFKProvider getProvider() {
+        return provider;
+    }
+}
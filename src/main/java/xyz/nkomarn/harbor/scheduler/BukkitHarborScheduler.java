@@ -0,0 +1,101 @@
+package xyz.nkomarn.harbor.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link HarborScheduler} backed by the {@link BukkitScheduler}, where all synchronous work runs on the main thread.
+ */
+public final class BukkitHarborScheduler implements HarborScheduler {
+    private final Plugin plugin;
+    private final BukkitScheduler scheduler;
+
+    public BukkitHarborScheduler(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+        this.scheduler = Bukkit.getScheduler();
+    }
+
+    @Override
+    public boolean isRegionized() {
+        return false;
+    }
+
+    @Override
+    public boolean isGlobalThread() {
+        return Bukkit.isPrimaryThread();
+    }
+
+    @Override
+    public void runGlobal(@NotNull Runnable task) {
+        scheduler.runTask(plugin, task);
+    }
+
+    @NotNull
+    @Override
+    public HarborTask runGlobalLater(@NotNull Runnable task, long delay) {
+        return wrap(scheduler.runTaskLater(plugin, task, delay));
+    }
+
+    @NotNull
+    @Override
+    public HarborTask runGlobalTimer(@NotNull Runnable task, long delay, long period) {
+        return wrap(scheduler.runTaskTimer(plugin, task, delay, period));
+    }
+
+    @Override
+    public void runAsync(@NotNull Runnable task) {
+        scheduler.runTaskAsynchronously(plugin, task);
+    }
+
+    @Override
+    public void runForEntity(@NotNull Entity entity, @NotNull Runnable task) {
+        if (Bukkit.isPrimaryThread()) {
+            task.run();
+        } else {
+            scheduler.runTask(plugin, task);
+        }
+    }
+
+    @NotNull
+    @Override
+    public HarborTask runForEntityLater(@NotNull Entity entity, @NotNull Runnable task, long delay) {
+        return wrap(scheduler.runTaskLater(plugin, () -> {
+            if (entity.isValid()) {
+                task.run();
+            }
+        }, delay));
+    }
+
+    @NotNull
+    @Override
+    public HarborTask runForEntityTimer(@NotNull Entity entity, @NotNull Runnable task, long delay, long period) {
+        BukkitTask[] handle = new BukkitTask[1];
+        handle[0] = scheduler.runTaskTimer(plugin, () -> {
+            if (entity.isValid()) {
+                task.run();
+            } else {
+                handle[0].cancel();
+            }
+        }, delay, period);
+        return wrap(handle[0]);
+    }
+
+    @NotNull
+    private static HarborTask wrap(@NotNull BukkitTask task) {
+        return new HarborTask() {
+            @Override
+            public void cancel() {
+                task.cancel();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return task.isCancelled();
+            }
+        };
+    }
+}
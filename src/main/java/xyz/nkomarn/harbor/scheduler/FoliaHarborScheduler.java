@@ -0,0 +1,109 @@
+package xyz.nkomarn.harbor.scheduler;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link HarborScheduler} for Folia, which runs world-wide work on the global region scheduler and player work on
+ * the scheduler of the entity it concerns.
+ */
+public final class FoliaHarborScheduler implements HarborScheduler {
+    private static final HarborTask RETIRED = new HarborTask() {
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return true;
+        }
+    };
+
+    private final Plugin plugin;
+
+    public FoliaHarborScheduler(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean isRegionized() {
+        return true;
+    }
+
+    @Override
+    public boolean isGlobalThread() {
+        return Bukkit.isGlobalTickThread();
+    }
+
+    @Override
+    public void runGlobal(@NotNull Runnable task) {
+        Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+    }
+
+    @NotNull
+    @Override
+    public HarborTask runGlobalLater(@NotNull Runnable task, long delay) {
+        // Folia does not accept delays of less than one tick
+        return wrap(Bukkit.getGlobalRegionScheduler().runDelayed(plugin, scheduledTask -> task.run(), Math.max(1, delay)));
+    }
+
+    @NotNull
+    @Override
+    public HarborTask runGlobalTimer(@NotNull Runnable task, long delay, long period) {
+        return wrap(Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, scheduledTask -> task.run(),
+                Math.max(1, delay), Math.max(1, period)));
+    }
+
+    @Override
+    public void runAsync(@NotNull Runnable task) {
+        Bukkit.getAsyncScheduler().runNow(plugin, scheduledTask -> task.run());
+    }
+
+    @Override
+    public void runForEntity(@NotNull Entity entity, @NotNull Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+        } else {
+            entity.getScheduler().execute(plugin, task, null, 1);
+        }
+    }
+
+    @NotNull
+    @Override
+    public HarborTask runForEntityLater(@NotNull Entity entity, @NotNull Runnable task, long delay) {
+        return wrap(entity.getScheduler().runDelayed(plugin, scheduledTask -> task.run(), null, Math.max(1, delay)));
+    }
+
+    @NotNull
+    @Override
+    public HarborTask runForEntityTimer(@NotNull Entity entity, @NotNull Runnable task, long delay, long period) {
+        return wrap(entity.getScheduler().runAtFixedRate(plugin, scheduledTask -> task.run(), null,
+                Math.max(1, delay), Math.max(1, period)));
+    }
+
+    /**
+     * Wraps a Folia task. Entity schedulers return null when the entity has already been removed.
+     */
+    @NotNull
+    private static HarborTask wrap(@Nullable ScheduledTask task) {
+        if (task == null) {
+            return RETIRED;
+        }
+
+        return new HarborTask() {
+            @Override
+            public void cancel() {
+                task.cancel();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return task.isCancelled();
+            }
+        };
+    }
+}
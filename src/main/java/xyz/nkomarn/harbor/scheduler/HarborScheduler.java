@@ -0,0 +1,111 @@
+package xyz.nkomarn.harbor.scheduler;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Schedules Harbor's work on the right thread for the server it runs on. On Paper everything that isn't async
+ * runs on the main thread; on Folia, world-wide work (such as world time and weather) runs on the global region
+ * and player work runs on the region that owns the player.
+ */
+public interface HarborScheduler {
+    /**
+     * @return Whether the server uses regionized multithreading (Folia).
+     */
+    boolean isRegionized();
+
+    /**
+     * @return Whether the current thread may modify global state such as world time and weather.
+     */
+    boolean isGlobalThread();
+
+    /**
+     * Runs a task on the global thread as soon as possible.
+     *
+     * @param task The task to run.
+     */
+    void runGlobal(@NotNull Runnable task);
+
+    /**
+     * Runs a task on the global thread after the given delay.
+     *
+     * @param task  The task to run.
+     * @param delay The delay in ticks.
+     *
+     * @return A handle to the scheduled task.
+     */
+    @NotNull
+    HarborTask runGlobalLater(@NotNull Runnable task, long delay);
+
+    /**
+     * Runs a task on the global thread repeatedly.
+     *
+     * @param task   The task to run.
+     * @param delay  The initial delay in ticks.
+     * @param period The period in ticks.
+     *
+     * @return A handle to the scheduled task.
+     */
+    @NotNull
+    HarborTask runGlobalTimer(@NotNull Runnable task, long delay, long period);
+
+    /**
+     * Runs a task off the server's tick threads.
+     *
+     * @param task The task to run.
+     */
+    void runAsync(@NotNull Runnable task);
+
+    /**
+     * Runs a task on the thread that owns the given entity. The task runs immediately if the current thread
+     * already owns the entity.
+     *
+     * @param entity The entity the task works with.
+     * @param task   The task to run.
+     */
+    void runForEntity(@NotNull Entity entity, @NotNull Runnable task);
+
+    /**
+     * Runs a task on the thread that owns the given entity after the given delay. The task does not run if the
+     * entity is removed in the meantime.
+     *
+     * @param entity The entity the task works with.
+     * @param task   The task to run.
+     * @param delay  The delay in ticks.
+     *
+     * @return A handle to the scheduled task.
+     */
+    @NotNull
+    HarborTask runForEntityLater(@NotNull Entity entity, @NotNull Runnable task, long delay);
+
+    /**
+     * Runs a task on the thread that owns the given entity repeatedly, until the entity is removed.
+     *
+     * @param entity The entity the task works with.
+     * @param task   The task to run.
+     * @param delay  The initial delay in ticks.
+     * @param period The period in ticks.
+     *
+     * @return A handle to the scheduled task.
+     */
+    @NotNull
+    HarborTask runForEntityTimer(@NotNull Entity entity, @NotNull Runnable task, long delay, long period);
+
+    /**
+     * Creates the scheduler matching the server Harbor is running on.
+     *
+     * @param plugin The plugin that owns the scheduled tasks.
+     *
+     * @return A Folia scheduler when running on Folia, otherwise a Bukkit scheduler.
+     */
+    @NotNull
+    static HarborScheduler create(@NotNull Plugin plugin) {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return new FoliaHarborScheduler(plugin);
+        } catch (ClassNotFoundException e) {
+            return new BukkitHarborScheduler(plugin);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package xyz.nkomarn.harbor.scheduler;
+
+/**
+ * A handle to a task scheduled through a {@link HarborScheduler}.
+ */
+public interface HarborTask {
+    /**
+     * Cancels the task, preventing any further executions.
+     */
+    void cancel();
+
+    /**
+     * @return Whether the task has been cancelled.
+     */
+    boolean isCancelled();
+}
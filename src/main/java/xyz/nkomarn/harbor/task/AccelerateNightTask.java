@@ -1,18 +1,43 @@
 package xyz.nkomarn.harbor.task;
 
+import org.bukkit.GameRule;
 import org.bukkit.Statistic;
 import org.bukkit.World;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.metrics.WorldMetrics;
+import xyz.nkomarn.harbor.scheduler.HarborScheduler;
+import xyz.nkomarn.harbor.scheduler.HarborTask;
 import xyz.nkomarn.harbor.util.Config;
+import xyz.nkomarn.harbor.util.Settings;
 
-public class AccelerateNightTask extends BukkitRunnable {
+/**
+ * Speeds up the night of a world. The extra time is accumulated every tick, fractions included, and applied
+ * every few ticks as configured, so that players receive fewer time updates. The final update lands exactly on
+ * the morning.
+ * <p>
+ * The rate is only looked up again when the sleep state of the world changes, and the tick on which the morning
+ * is reached is worked out from it and the current time, so the world is otherwise only touched on update ticks.
+ */
+public class AccelerateNightTask implements Runnable {
 
     private final Harbor harbor;
     private final Checker checker;
     private final World world;
     private final Config config;
+    private final HarborScheduler scheduler;
+    private final HarborTask task;
+    private final int updateInterval;
+    private final WorldMetrics metrics;
+    private double pendingTime;
+    private int ticksSinceUpdate;
+    private long tick;
+    private long version = Long.MIN_VALUE;
+    private Settings settings;
+    private double timeRate;
+    private boolean daylightCycle;
+    private long completionTick;
 
     private static final int dayTime = 23460;
 
@@ -22,36 +47,114 @@ public class AccelerateNightTask extends BukkitRunnable {
         this.world = world;
 
         config = harbor.getConfiguration();
+        scheduler = harbor.getHarborScheduler();
+        updateInterval = config.getSettings().getTimeUpdateInterval();
+        metrics = harbor.getMetrics().getWorld(world);
 
-        runTaskTimer(harbor, 1, 1);
+        // World time is global state, so this runs on the global region when regionized
+        task = scheduler.runGlobalTimer(this, 1, 1);
     }
 
     @Override
     public void run() {
+        long started = System.nanoTime();
+        advance();
+        metrics.getAccelerate().recordSince(started);
+    }
+
+    private void advance() {
+        long now = ++tick;
+        Settings settings = config.getSettings();
+        long currentVersion = checker.getSleepIndex().getVersion(world);
+
+        // The rate only changes with the sleep state of the world, or on reload
+        if (currentVersion != version || settings != this.settings) {
+            version = currentVersion;
+            this.settings = settings;
+            timeRate = checker.getTimescale(world);
+            daylightCycle = !Boolean.FALSE.equals(world.getGameRuleValue(GameRule.DO_DAYLIGHT_CYCLE));
+
+            if (timeRate == Double.POSITIVE_INFINITY) { // Instantly skip night if enabled
+                world.setTime(dayTime);
+                metrics.getTimeUpdates().increment();
+                metrics.getSkipsCompleted().increment();
+                checker.clearWeather(world);
+                checker.resetStatus(world);
+                cancel();
+                return;
+            }
+
+            // Work out the morning again from the current time, without moving the next update forward
+            completionTick = now + ticksUntilMorning(world.getTime());
+        }
+
+        if (timeRate > 1) {
+            pendingTime += timeRate;
+        }
+
+        if (++ticksSinceUpdate < updateInterval && now < completionTick) {
+            return;
+        }
+
+        ticksSinceUpdate = 0;
         long time = world.getTime();
-        double timeRate = checker.getTimescale(world);
 
-        if (timeRate == Double.POSITIVE_INFINITY) { // Instantly skip night if enabled
+        if (time >= dayTime) {
+            // The night ended on its own
+            finish();
+            return;
+        }
+
+        long advance = (long) pendingTime;
+        if (time + advance >= dayTime) {
             world.setTime(dayTime);
-            checker.clearWeather(world);
-            checker.resetStatus(world);
-            cancel();
+            metrics.getTimeUpdates().increment();
+            finish();
             return;
         }
 
-        if (time >= (dayTime - timeRate * 1.5) && time <= dayTime) {
-            if (config.getBoolean("night-skip.reset-phantom-statistic")) {
-                world.getPlayers().forEach(player -> player.setStatistic(Statistic.TIME_SINCE_REST, 0));
-            }
+        if (advance > 0) {
+            // Keep the fraction for the next update
+            pendingTime -= advance;
+            time += advance;
+            world.setTime(time);
+            metrics.getTimeUpdates().increment();
+        }
 
-            checker.clearWeather(world);
-            checker.resetStatus(world);
-            cancel();
-            return;
+        completionTick = now + ticksUntilMorning(time);
+    }
+
+    /**
+     * Computes how many ticks it takes from the given time until the morning at the current rate.
+     */
+    private long ticksUntilMorning(long time) {
+        double perTick = (timeRate > 1 ? timeRate : 0) + (daylightCycle ? 1 : 0);
+
+        if (perTick <= 0) {
+            return Long.MAX_VALUE / 2;
         }
 
-        if(timeRate > 1) {
-            world.setTime(time + (int) timeRate);
+        return Math.max(1, (long) Math.ceil((dayTime - time - pendingTime) / perTick));
+    }
+
+    private void finish() {
+        metrics.getSkipsCompleted().increment();
+
+        if (config.getSettings().isResetPhantomStatistic()) {
+            for (Player player : checker.getSleepIndex().getPlayers(world)) {
+                scheduler.runForEntity(player, () -> player.setStatistic(Statistic.TIME_SINCE_REST, 0));
+            }
         }
+
+        checker.clearWeather(world);
+        checker.resetStatus(world);
+        cancel();
+    }
+
+    /**
+     * Stops accelerating the night.
+     */
+    public void cancel() {
+        task.cancel();
     }
 }
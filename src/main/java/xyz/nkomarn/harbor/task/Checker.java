@@ -1,108 +1,373 @@
 package xyz.nkomarn.harbor.task;
 
-import com.google.common.base.Enums;
-import com.google.common.base.Optional;
 import org.bukkit.Bukkit;
 import org.bukkit.Sound;
 import org.bukkit.World;
-import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.TimeSkipEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.metadata.MetadataValue;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.api.ExclusionProvider;
+import xyz.nkomarn.harbor.metrics.HarborMetrics;
+import xyz.nkomarn.harbor.metrics.WorldMetrics;
 import xyz.nkomarn.harbor.provider.GameModeExclusionProvider;
-import xyz.nkomarn.harbor.util.Config;
+import xyz.nkomarn.harbor.provider.PermissionExclusionProvider;
+import xyz.nkomarn.harbor.scheduler.HarborScheduler;
 import xyz.nkomarn.harbor.util.Messages;
+import xyz.nkomarn.harbor.util.Settings;
+import xyz.nkomarn.harbor.util.SleepIndex;
+import xyz.nkomarn.harbor.util.TimingWheel;
+import xyz.nkomarn.harbor.util.WorldSleepSnapshot;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates the sleep state of every world at night, and starts skipping the night once enough players sleep.
+ * <p>
+ * Only worlds in which it is night are evaluated on every pass. A world that is found to be in daytime is put
+ * into a timing wheel until its computed nightfall, and is only looked at again then, or earlier if a player
+ * enters a bed or the time is changed in it.
+ */
+public class Checker implements Runnable, Listener {
+    private static final long DAY_LENGTH = 24000L;
+    private static final long NIGHT_START = 12541L;
+    private static final long NIGHT_END = 23460L;
 
-import static java.util.stream.Collectors.toList;
-
-public class Checker extends BukkitRunnable {
     private final Set<ExclusionProvider> providers;
+    private final Set<ExclusionProvider> uncachedProviders;
+    private final Map<UUID, Boolean> exclusions;
+    private final AtomicLong exclusionVersion;
     private final Harbor harbor;
+    private final HarborScheduler scheduler;
     private final Set<UUID> skippingWorlds;
+    private final SleepIndex sleepIndex;
+    private final Map<UUID, WorldSleepSnapshot> snapshots;
+    private final Map<UUID, WorldSchedule> schedules;
+    private final List<WorldSchedule> activeWorlds;
+    private final Queue<UUID> wakeUps;
+    private final TimingWheel<ScheduledWake> nightfalls;
+    private final int interval;
 
     public Checker(@NotNull Harbor harbor) {
         this.harbor = harbor;
-        this.skippingWorlds = new HashSet<>();
-        this.providers = new HashSet<>();
-
-        // GameModeExclusionProvider checks each case on its own
-        providers.add(new GameModeExclusionProvider(harbor));
-
-        // The others are simple enough that we can use lambdas
-        providers.add(player -> harbor.getConfig().getBoolean("exclusions.ignored-permission", true) && player.hasPermission("harbor.ignored"));
-        providers.add(player -> harbor.getConfig().getBoolean("exclusions.exclude-vanished", false) && isVanished(player));
-        providers.add(Player::isSleepingIgnored);
+        this.scheduler = harbor.getHarborScheduler();
+        this.skippingWorlds = ConcurrentHashMap.newKeySet();
+        this.snapshots = new ConcurrentHashMap<>();
+        // Providers are read from region threads while they may be registered from anywhere
+        this.providers = new CopyOnWriteArraySet<>();
+        this.uncachedProviders = new CopyOnWriteArraySet<>();
+        this.exclusions = new ConcurrentHashMap<>();
+        this.exclusionVersion = new AtomicLong();
+
+        // GameModeExclusionProvider and PermissionExclusionProvider check each case on their own. Permissions
+        // can change without any event, so only the game mode provider is cacheable
+        addExclusionProvider(new GameModeExclusionProvider(harbor));
+        addExclusionProvider(new PermissionExclusionProvider(harbor));
+
+        // The others are simple enough that we can use lambdas; they can change without an event, so aren't cached
+        addExclusionProvider(player -> harbor.getConfiguration().getSettings().isExcludeVanished() && harbor.getVanishTracker().isVanished(player));
+        addExclusionProvider(Player::isSleepingIgnored);
+
+        this.sleepIndex = new SleepIndex(harbor, this);
+
+        this.interval = harbor.getConfiguration().getSettings().getInterval();
+        this.schedules = new ConcurrentHashMap<>();
+        this.activeWorlds = new ArrayList<>();
+        this.wakeUps = new ConcurrentLinkedQueue<>();
+        this.nightfalls = new TimingWheel<>(interval, DAY_LENGTH, Bukkit.getCurrentTick());
+
+        // Every world is evaluated on the first pass, which finds out when it is due next
+        for (World world : Bukkit.getWorlds()) {
+            wake(world);
+        }
 
-        int interval = harbor.getConfiguration().getInteger("interval");
-        // Default to 1 if its invalid
-        if (interval <= 0)
-            interval = 1;
-        runTaskTimerAsynchronously(harbor, 0L, interval);
+        scheduler.runGlobalTimer(this, 1L, interval);
     }
 
+    /**
+     * Runs a pass in three phases on the global thread: the raw sleep state of every applicable world is captured,
+     * evaluated into snapshots, and the results are applied.
+     */
     @Override
     public void run() {
-        Bukkit.getWorlds().stream()
-                .filter(this::validateWorld)
-                .forEach(this::checkWorld);
+        HarborMetrics metrics = harbor.getMetrics();
+        long started = System.nanoTime();
+        long now = Bukkit.getCurrentTick();
+        List<WorldCapture> captures = new ArrayList<>();
+
+        activateDueWorlds(now);
+
+        for (int i = activeWorlds.size() - 1; i >= 0; i--) {
+            WorldSchedule schedule = activeWorlds.get(i);
+            World world = schedule.world;
+            long time = world.getTime();
+
+            if (schedule.unloaded || isBlacklisted(world) || !isNight(time)) {
+                // Swap in the last world, the order of the pass doesn't matter
+                activeWorlds.set(i, activeWorlds.get(activeWorlds.size() - 1));
+                activeWorlds.remove(activeWorlds.size() - 1);
+                schedule.active = false;
+
+                if (!schedule.unloaded) {
+                    scheduleNightfall(schedule, now, time);
+                }
+                continue;
+            }
+
+            long worldStarted = System.nanoTime();
+            sleepIndex.refresh(world);
+            WorldCapture capture = capture(world, time);
+            captures.add(capture);
+
+            WorldMetrics worldMetrics = metrics.getWorld(world);
+            worldMetrics.getCapture().recordSince(worldStarted);
+            worldMetrics.getPlayersScanned().add(capture.playerCount);
+            metrics.getPlayersScanned().add(capture.playerCount);
+        }
+
+        metrics.getCheckerCapture().recordSince(started);
+
+        if (captures.isEmpty()) {
+            return;
+        }
+
+        long evaluateStarted = System.nanoTime();
+        List<WorldSleepSnapshot> results = evaluate(captures);
+        metrics.getCheckerEvaluate().recordSince(evaluateStarted);
+
+        long applyStarted = System.nanoTime();
+        results.forEach(this::apply);
+        harbor.getMessages().flush();
+        metrics.getCheckerApply().recordSince(applyStarted);
     }
 
     /**
-     * Checks if a given world is applicable for night skipping.
+     * Makes the worlds that were woken up or whose nightfall came active, so they are evaluated on every pass
+     * until it is day in them again. Must be called on the global thread.
      *
-     * @param world The world to check.
+     * @param now The current tick.
+     */
+    private void activateDueWorlds(long now) {
+        UUID uuid;
+        while ((uuid = wakeUps.poll()) != null) {
+            WorldSchedule schedule = schedules.get(uuid);
+
+            if (schedule == null) {
+                continue;
+            }
+
+            schedule.woken.set(false);
+
+            // Woken up while or after being unloaded
+            if (Bukkit.getWorld(uuid) == null) {
+                schedules.remove(uuid, schedule);
+                continue;
+            }
+
+            activate(schedule);
+        }
+
+        nightfalls.advance(now, wake -> {
+            WorldSchedule schedule = wake.schedule;
+
+            // Woken up or unloaded since, which made this wake up stale
+            if (schedule.unloaded || schedule.active || schedule.nightfall != wake.tick) {
+                return;
+            }
+
+            if (wake.tick > now) {
+                // Further away than the wheel spans
+                nightfalls.schedule(wake, wake.tick);
+                return;
+            }
+
+            activate(schedule);
+        });
+    }
+
+    private void activate(@NotNull WorldSchedule schedule) {
+        if (!schedule.active && !schedule.unloaded) {
+            schedule.active = true;
+            activeWorlds.add(schedule);
+        }
+    }
+
+    /**
+     * Puts a world that is in daytime aside until the night begins in it.
+     */
+    private void scheduleNightfall(@NotNull WorldSchedule schedule, long now, long time) {
+        // The night starts on the first tick after NIGHT_START, later on the next day if it is already over
+        long delay = time <= NIGHT_START ? NIGHT_START + 1 - time : DAY_LENGTH - time + NIGHT_START + 1;
+        long tick = now + delay;
+
+        // Woken up during the day, while the same nightfall is still in the wheel
+        if (tick == schedule.nightfall) {
+            return;
+        }
+
+        schedule.nightfall = tick;
+        nightfalls.schedule(new ScheduledWake(schedule, tick), tick);
+    }
+
+    /**
+     * Has the given world evaluated on the next pass, even if the night wasn't expected to start in it yet, such as
+     * when a player enters a bed in it. Safe to call from any thread.
      *
-     * @return Whether Harbor should run the night skipping check below.
+     * @param world The world to wake up.
      */
-    private boolean validateWorld(@NotNull World world) {
-        return !isBlacklisted(world) && isNight(world);
+    public void wake(@NotNull World world) {
+        // The schedule is created here rather than on the next pass, so that wake-ups before it are deduplicated too
+        WorldSchedule schedule = schedules.computeIfAbsent(world.getUID(), uuid -> new WorldSchedule(world));
+
+        // Already evaluated on every pass, or already waiting for the next one
+        if (schedule.active || !schedule.woken.compareAndSet(false, true)) {
+            return;
+        }
+
+        wakeUps.add(world.getUID());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(@NotNull WorldLoadEvent event) {
+        wake(event.getWorld());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onWorldUnload(@NotNull WorldUnloadEvent event) {
+        harbor.getMetrics().removeWorld(event.getWorld());
+        WorldSchedule schedule = schedules.remove(event.getWorld().getUID());
+
+        if (schedule != null) {
+            schedule.unloaded = true;
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onTimeSkip(@NotNull TimeSkipEvent event) {
+        // Commands and other plugins can move the time into the night early
+        wake(event.getWorld());
     }
 
     /**
-     * Checks if enough people are sleeping, and in the case there are, starts the night skip task.
+     * Captures the raw sleep state of the given world. Must be called on the global thread.
      *
-     * @param world The world to check.
+     * @param world The world to capture.
+     *
+     * @return The captured state.
+     */
+    @NotNull
+    private WorldCapture capture(@NotNull World world) {
+        return capture(world, world.getTime());
+    }
+
+    @NotNull
+    private WorldCapture capture(@NotNull World world, long time) {
+        Player[] sleepers = sleepIndex.getSleepingPlayers(world, true).toArray(new Player[0]);
+        boolean[] sleeperExcluded = new boolean[sleepers.length];
+
+        for (int i = 0; i < sleepers.length; i++) {
+            sleeperExcluded[i] = sleepIndex.isExcluded(sleepers[i]);
+        }
+
+        return new WorldCapture(world, sleepers, sleeperExcluded, sleepIndex.getPlayerCount(world),
+                sleepIndex.getExcludedCount(world), time, Bukkit.getCurrentTick());
+    }
+
+    /**
+     * Evaluates captured world states into snapshots. Does not touch any world or player, so it is safe to call
+     * from any thread.
+     *
+     * @param captures The captured world states.
+     *
+     * @return A snapshot for every capture.
+     */
+    @NotNull
+    private List<WorldSleepSnapshot> evaluate(@NotNull List<WorldCapture> captures) {
+        List<WorldSleepSnapshot> results = new ArrayList<>(captures.size());
+
+        for (WorldCapture capture : captures) {
+            results.add(evaluate(capture));
+        }
+
+        return results;
+    }
+
+    @NotNull
+    private WorldSleepSnapshot evaluate(@NotNull WorldCapture capture) {
+        int sleeping = 0;
+
+        for (boolean excluded : capture.sleeperExcluded) {
+            if (!excluded) {
+                sleeping++;
+            }
+        }
+
+        int players = Math.max(0, capture.playerCount - capture.excludedCount);
+        int skipAmount = getSkipAmount(players);
+        int needed = Math.max(0, skipAmount - sleeping);
+
+        return new WorldSleepSnapshot(capture.world, List.of(capture.sleepers), sleeping, players, skipAmount, needed,
+                getTimescale(sleeping, players, skipAmount), capture.time, capture.tick);
+    }
+
+    /**
+     * Publishes the given snapshot, sends the sleep messages and, if enough people are sleeping, starts the night
+     * skip task. Must be called on the global thread.
+     *
+     * @param snapshot The evaluated state of the world.
      */
-    private void checkWorld(@NotNull World world) {
-        Config config = harbor.getConfiguration();
+    private void apply(@NotNull WorldSleepSnapshot snapshot) {
+        Settings settings = harbor.getConfiguration().getSettings();
         Messages messages = harbor.getMessages();
+        World world = snapshot.getWorld();
+
+        snapshots.put(world.getUID(), snapshot);
 
         //Send title to excluded sleeping players too
-        messages.sendTitleMessage(getSleepingPlayers(world, true), config.getString("messages.title.sleep-title"),
-                config.getString("messages.title.sleep-subtitle"));
+        messages.sendTitleMessage(snapshot, snapshot.getSleepingPlayers(), settings.getSleepTitle(),
+                settings.getSleepSubtitle());
 
-        if (getSleepingPlayers(world).isEmpty()) {
+        if (snapshot.getSleeping() == 0) {
             messages.clearBar(world);
             return;
         }
 
-        messages.sendBossBarMessage(world, config.getString("messages.bossbar.message"),
-                config.getString("messages.bossbar.color"), 1);
+        messages.sendBossBarMessage(snapshot, settings.getBossBarMessage(), settings.getBossBarColor(), 1);
 
         if (!skippingWorlds.contains(world.getUID()) &&
-                (config.getBoolean("night-speed.enabled") || config.getBoolean("night-skip.enabled"))) {
+                (settings.isNightSpeedEnabled() || settings.isNightSkipEnabled())) {
             skippingWorlds.add(world.getUID());
+            harbor.getMetrics().getWorld(world).getSkipsStarted().increment();
             new AccelerateNightTask(harbor, this, world);
         }
     }
 
     /**
-     * Checks if the time in a given world is considered to be night.
+     * Checks if the given time of day is considered to be night.
      *
-     * @param world The world to check.
+     * @param time The time of day.
      *
-     * @return Whether it is currently night in the provided world.
+     * @return Whether it is night at the given time.
      */
-    private boolean isNight(@NotNull World world) {
-        return world.getTime() > 12541L && world.getTime() < 23460L;
+    private static boolean isNight(long time) {
+        return time > NIGHT_START && time < NIGHT_END;
     }
 
     /**
@@ -113,17 +378,12 @@ public class Checker extends BukkitRunnable {
      * @return Whether a world is excluded from Harbor checks.
      */
     public boolean isBlacklisted(@NotNull World world) {
-        boolean blacklisted = harbor.getConfiguration().getStringList("blacklisted-worlds").contains(world.getName());
-
-        if (harbor.getConfiguration().getBoolean("whitelist-mode")) {
-            return !blacklisted;
-        }
-
-        return blacklisted;
+        return harbor.getConfiguration().getSettings().getWorldFilter().isBlacklisted(world);
     }
 
     /**
-     * Checks if a given player is in a vanished state.
+     * Checks if a given player is in a vanished state according to their metadata. This is a slow lookup,
+     * prefer {@link xyz.nkomarn.harbor.util.VanishTracker#isVanished(Player)}.
      *
      * @param player The player to check.
      *
@@ -141,7 +401,18 @@ public class Checker extends BukkitRunnable {
      * @return The amount of players in a given world, minus excluded players.
      */
     public int getPlayers(@NotNull World world) {
-        return Math.max(0, world.getPlayers().size() - getExcluded(world).size());
+        return sleepIndex.getCountedPlayers(world);
+    }
+
+    /**
+     * Returns the amount of sleeping players in a given world, ignoring excluded players.
+     *
+     * @param world The world in which to check for sleeping players.
+     *
+     * @return The amount of currently sleeping players in the provided world.
+     */
+    public int getSleepingCount(@NotNull World world) {
+        return sleepIndex.getSleepingCount(world);
     }
 
     /**
@@ -166,11 +437,7 @@ public class Checker extends BukkitRunnable {
      */
     @NotNull
     public List<Player> getSleepingPlayers(@NotNull World world, boolean includeExcluded) {
-        List<Player> excluded = getExcluded(world);
-
-        return world.getPlayers().stream()
-                .filter(e -> (includeExcluded || !excluded.contains(e)) && e.isSleeping())
-                .collect(toList());
+        return sleepIndex.getSleepingPlayers(world, includeExcluded);
     }
 
     /**
@@ -181,7 +448,11 @@ public class Checker extends BukkitRunnable {
      * @return The amount of players that need to sleep to skip the night.
      */
     public int getSkipAmount(@NotNull World world) {
-        return (int) Math.ceil(getPlayers(world) * (harbor.getConfiguration().getDouble("night-skip.skip-percentage") / 100));
+        return getSkipAmount(getPlayers(world));
+    }
+
+    private int getSkipAmount(int players) {
+        return (int) Math.ceil(players * (harbor.getConfiguration().getSettings().getSkipPercentage() / 100));
     }
 
     /**
@@ -192,8 +463,8 @@ public class Checker extends BukkitRunnable {
      * @return The amount of players that still need to get into bed to start the night skipping task.
      */
     public int getNeeded(@NotNull World world) {
-        double percentage = harbor.getConfiguration().getDouble("night-skip.skip-percentage");
-        return Math.max(0, (int) Math.ceil((getPlayers(world)) * (percentage / 100) - getSleepingPlayers(world).size()));
+        double percentage = harbor.getConfiguration().getSettings().getSkipPercentage();
+        return Math.max(0, (int) Math.ceil((getPlayers(world)) * (percentage / 100) - getSleepingCount(world)));
     }
 
     /**
@@ -204,23 +475,25 @@ public class Checker extends BukkitRunnable {
      * @return The timescale
      */
     public double getTimescale(@NotNull World world) {
-        Config config = harbor.getConfiguration();
-        int sleeping = getSleepingPlayers(world).size();
         int total = getPlayers(world);
+        return getTimescale(getSleepingCount(world), total, getSkipAmount(total));
+    }
+
+    private double getTimescale(int sleeping, int total, int skipPlayerCount) {
+        Settings settings = harbor.getConfiguration().getSettings();
 
         if(sleeping == 0 || total == 0) {
             return 1;
         }
 
-        boolean speedEnabled = config.getBoolean("night-speed.enabled");
-        boolean skipEnabled = config.getBoolean("night-skip.enabled");
+        boolean speedEnabled = settings.isNightSpeedEnabled();
+        boolean skipEnabled = settings.isNightSkipEnabled();
 
-        boolean instantSkip = config.getBoolean("night-skip.instant-skip");
-        int skipPlayerCount = getSkipAmount(world);
+        boolean instantSkip = settings.isInstantSkip();
 
-        int minMultiplier = config.getInteger("night-speed.min-speed-multiplier");
-        int maxMultiplier = config.getInteger("night-speed.max-speed-multiplier");
-        int skipMultiplier = config.getInteger("night-skip.skip-speed-multiplier");
+        double minMultiplier = settings.getMinSpeedMultiplier();
+        double maxMultiplier = settings.getMaxSpeedMultiplier();
+        double skipMultiplier = settings.getSkipSpeedMultiplier();
 
         if(skipEnabled && sleeping >= skipPlayerCount) { // Enough asleep players to skip
             if (instantSkip) { // Instantly skip night if enabled
@@ -234,14 +507,14 @@ public class Checker extends BukkitRunnable {
             } else if(skipEnabled && sleeping == skipPlayerCount - 1) {
                 return maxMultiplier;
             } else if(skipEnabled) { // Scale speed between 1 player and [skip threshold] - 1 players
-                return minMultiplier + Math.round(
-                        ((double) (maxMultiplier - minMultiplier) *
-                                (sleeping - 1)  //Ignore first sleeping player as handled by minSpeed
-                                / (skipPlayerCount - 2))); //Ignore first sleeping player and skip causing player
-            } else { // Otherwise scale between 1 and all players
+                return minMultiplier + (maxMultiplier - minMultiplier) *
+                        (sleeping - 1)  //Ignore first sleeping player as handled by minSpeed
+                        / (skipPlayerCount - 2); //Ignore first sleeping player and skip causing player
+            } else if (total > 1) { // Otherwise scale between 1 and all players
                 //Ignore first sleeping player as handled by minSpeed
-                return minMultiplier + Math.round(
-                        (double) (maxMultiplier - minMultiplier) * (double) ((sleeping - 1) / (total - 1)));
+                return minMultiplier + (maxMultiplier - minMultiplier) * (sleeping - 1) / (total - 1);
+            } else { // The only player is sleeping
+                return maxMultiplier;
             }
         }
 
@@ -249,28 +522,101 @@ public class Checker extends BukkitRunnable {
     }
 
     /**
-     * Returns a list of players that are considered to be excluded from Harbor's player count checks.
+     * Checks if a given player is considered excluded from Harbor's checks.
      *
-     * @param world The world for which to check for excluded players.
+     * @param player The player to check.
      *
-     * @return A list of excluded players in the given world.
+     * @return Whether the given player is excluded.
+     */
+    public boolean isExcluded(@NotNull Player player) {
+        LongAdder providerCalls = harbor.getMetrics().getProviderCalls();
+
+        for (ExclusionProvider provider : uncachedProviders) {
+            providerCalls.increment();
+            if (provider.isExcluded(player)) {
+                return true;
+            }
+        }
+
+        Boolean cached = exclusions.get(player.getUniqueId());
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = exclusionVersion.get();
+        boolean excluded = false;
+
+        for (ExclusionProvider provider : providers) {
+            if (!provider.isCacheable()) {
+                continue;
+            }
+
+            providerCalls.increment();
+            if (provider.isExcluded(player)) {
+                excluded = true;
+                break;
+            }
+        }
+
+        // Only keep the result if nothing was invalidated while the providers were asked. Checking before the put
+        // would miss an invalidation between the check and the put, so put first and take it back on a mismatch;
+        // an invalidation after the check removes the entry itself.
+        exclusions.put(player.getUniqueId(), excluded);
+        if (exclusionVersion.get() != version) {
+            exclusions.remove(player.getUniqueId(), excluded);
+        }
+
+        return excluded;
+    }
+
+    /**
+     * Drops the cached exclusion result of a player, so the cacheable providers are asked again on the next check.
+     *
+     * @param player The player whose exclusion may have changed.
+     */
+    public void invalidateExclusions(@NotNull Player player) {
+        exclusionVersion.incrementAndGet();
+        exclusions.remove(player.getUniqueId());
+    }
+
+    /**
+     * Drops the cached exclusion results of all players.
+     */
+    public void invalidateExclusions() {
+        exclusionVersion.incrementAndGet();
+        exclusions.clear();
+    }
+
+    /**
+     * Computes the sleep state of the given world once and stores it as the world's current snapshot.
+     *
+     * @param world The world to take a snapshot of.
+     *
+     * @return The new snapshot.
      */
     @NotNull
-    private List<Player> getExcluded(@NotNull World world) {
-        return world.getPlayers().stream()
-                .filter(this::isExcluded)
-                .collect(toList());
+    public WorldSleepSnapshot takeSnapshot(@NotNull World world) {
+        WorldSleepSnapshot snapshot = evaluate(capture(world));
+        snapshots.put(world.getUID(), snapshot);
+        return snapshot;
     }
 
     /**
-     * Checks if a given player is considered excluded from Harbor's checks.
+     * Returns the most recent snapshot of the given world, taking a new one if it is older than the check interval.
      *
-     * @param player The player to check.
+     * @param world The world to get the snapshot of.
      *
-     * @return Whether the given player is excluded.
+     * @return The current snapshot of the world.
      */
-    private boolean isExcluded(@NotNull Player player) {
-        return providers.stream().anyMatch(provider -> provider.isExcluded(player));
+    @NotNull
+    public WorldSleepSnapshot getSnapshot(@NotNull World world) {
+        WorldSleepSnapshot snapshot = snapshots.get(world.getUID());
+
+        if (snapshot == null || Bukkit.getCurrentTick() - snapshot.getTick() >= interval) {
+            return takeSnapshot(world);
+        }
+
+        return snapshot;
     }
 
     /**
@@ -291,6 +637,7 @@ public class Checker extends BukkitRunnable {
      */
     public void forceSkip(@NotNull World world) {
         skippingWorlds.add(world.getUID());
+        harbor.getMetrics().getWorld(world).getSkipsStarted().increment();
         new AccelerateNightTask(harbor, this, world);
     }
 
@@ -301,10 +648,10 @@ public class Checker extends BukkitRunnable {
      */
     public void resetStatus(@NotNull World world) {
         wakeUpPlayers(world);
-        harbor.getServer().getScheduler().runTaskLater(harbor, () -> {
+        scheduler.runGlobalLater(() -> {
             harbor.getMessages().clearBar(world);
             skippingWorlds.remove(world.getUID());
-            harbor.getPlayerManager().clearCooldowns();
+            harbor.getPlayerManager().clearUiStates();
         }, 20L);
     }
 
@@ -315,23 +662,29 @@ public class Checker extends BukkitRunnable {
      */
     public void wakeUpPlayers(@NotNull World world) {
         ensureMain(() -> {
-            Config config = harbor.getConfiguration();
-            Optional<Sound> sound = Enums.getIfPresent(Sound.class, config.getString("morning.play-sound"));
-
-            world.getPlayers().stream()
-                    .filter(LivingEntity::isSleeping)
-                    .forEach(player -> {
-                        if (sound.isPresent()) {
-                            player.playSound(player.getLocation(), sound.get(), 1.0f, 1.0f);
-                        }
-
-                        //Send title to excluded sleeping players too
-                        harbor.getMessages().sendTitleMessage(player,
-                                                              config.getString("messages.title.morning-title"),
-                                                              config.getString("messages.title.morning-subtitle"));
-
-                        player.wakeup(true);
-                    });
+            Settings settings = harbor.getConfiguration().getSettings();
+            // The last snapshot was taken at night, the morning title should show the morning
+            WorldSleepSnapshot snapshot = takeSnapshot(world);
+            Sound sound = settings.getMorningSound();
+
+            for (Player player : sleepIndex.getSleepingPlayers(world, true)) {
+                scheduler.runForEntity(player, () -> {
+                    if (!player.isSleeping()) {
+                        return;
+                    }
+
+                    if (sound != null) {
+                        player.playSound(player.getLocation(), sound, 1.0f, 1.0f);
+                    }
+
+                    //Send title to excluded sleeping players too
+                    harbor.getMessages().sendTitleMessage(player, snapshot,
+                                                          settings.getMorningTitle(),
+                                                          settings.getMorningSubtitle());
+
+                    player.wakeup(true);
+                });
+            }
         });
     }
 
@@ -342,37 +695,51 @@ public class Checker extends BukkitRunnable {
      */
     public void clearWeather(@NotNull World world) {
         ensureMain(() -> {
-            Config config = harbor.getConfiguration();
+            Settings settings = harbor.getConfiguration().getSettings();
 
-            if (world.hasStorm() && config.getBoolean("night-skip.clear-rain")) {
+            if (world.hasStorm() && settings.isClearRain()) {
                 world.setStorm(false);
             }
 
-            if (world.isThundering() && config.getBoolean("night-skip.clear-thunder")) {
+            if (world.isThundering() && settings.isClearThunder()) {
                 world.setThundering(false);
             }
         });
     }
 
     /**
-     * Ensures the provided task is ran on the server thread.
+     * Ensures the provided task is ran on the global thread (the main thread on non-regionized servers).
      *
-     * @param runnable The task to run on the server thread.
+     * @param runnable The task to run on the global thread.
      */
     public void ensureMain(@NotNull Runnable runnable) {
-        if (!Bukkit.isPrimaryThread()) {
-            Bukkit.getScheduler().runTask(harbor, runnable);
+        if (!scheduler.isGlobalThread()) {
+            scheduler.runGlobal(runnable);
         } else {
             runnable.run();
         }
     }
 
+    /**
+     * Returns the index of sleeping and excluded players per world.
+     *
+     * @return The {@link SleepIndex} backing this checker.
+     */
+    @NotNull
+    public SleepIndex getSleepIndex() {
+        return sleepIndex;
+    }
+
     /**
      * Adds an {@link ExclusionProvider}, which will be checked as a condition. All Exclusions will be ORed together
      * on which to exclude a given player
      */
     public void addExclusionProvider(ExclusionProvider provider) {
         providers.add(provider);
+        if (!provider.isCacheable()) {
+            uncachedProviders.add(provider);
+        }
+        invalidateExclusions();
     }
 
     /**
@@ -380,5 +747,37 @@ public class Checker extends BukkitRunnable {
      */
     public void removeExclusionProvider(ExclusionProvider provider) {
         providers.remove(provider);
+        uncachedProviders.remove(provider);
+        invalidateExclusions();
+    }
+
+    /**
+     * Where a world is in the night window scheduling. Created by {@link #wake(World)} and otherwise only changed
+     * on the global thread, apart from the flags that are read by {@link #wake(World)} and written on unload.
+     */
+    private static final class WorldSchedule {
+        private final World world;
+        private final AtomicBoolean woken;
+        private volatile boolean active;
+        private volatile boolean unloaded;
+        private long nightfall;
+
+        private WorldSchedule(@NotNull World world) {
+            this.world = world;
+            this.woken = new AtomicBoolean();
+        }
+    }
+
+    /**
+     * A world's nightfall in the timing wheel
+     */
+    private static final class ScheduledWake {
+        private final WorldSchedule schedule;
+        private final long tick;
+
+        private ScheduledWake(@NotNull WorldSchedule schedule, long tick) {
+            this.schedule = schedule;
+            this.tick = tick;
+        }
     }
 }
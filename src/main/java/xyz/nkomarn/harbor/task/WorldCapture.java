@@ -0,0 +1,30 @@
+package xyz.nkomarn.harbor.task;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Raw sleep state of a world, captured on the global thread. Holds no references that need to be read from
+ * the world or its players again, so evaluating it is a handful of comparisons.
+ */
+final class WorldCapture {
+    final World world;
+    final Player[] sleepers;
+    final boolean[] sleeperExcluded;
+    final int playerCount;
+    final int excludedCount;
+    final long time;
+    final int tick;
+
+    WorldCapture(@NotNull World world, @NotNull Player[] sleepers, @NotNull boolean[] sleeperExcluded,
+                 int playerCount, int excludedCount, long time, int tick) {
+        this.world = world;
+        this.sleepers = sleepers;
+        this.sleeperExcluded = sleeperExcluded;
+        this.playerCount = playerCount;
+        this.excludedCount = excludedCount;
+        this.time = time;
+        this.tick = tick;
+    }
+}
@@ -0,0 +1,56 @@
+package xyz.nkomarn.harbor.trace;
+
+/**
+ * The layout of Harbor's trace files, shared by the {@link TraceRecorder} and the {@link TraceReader}.
+ * <p>
+ * A trace is a gzip stream that starts with {@link #MAGIC}, the {@link #VERSION} as a varint and the wall clock
+ * time the recording started at in epoch milliseconds as a fixed eight byte long. Each record after that is its
+ * type as a single byte, the ticks since the previous record as a varint, and the fields of the type.
+ * <p>
+ * Worlds and players are referred to by small ids. A {@link #WORLD} or {@link #PLAYER} record defines an id
+ * before it is first used. Positions and angles are four byte floats, all other numbers are varints, and names
+ * are varint length prefixed UTF-8.
+ */
+public final class TraceFormat {
+    public static final int MAGIC = 0x48545243;
+    public static final int VERSION = 1;
+
+    /** World id, UUID as two longs, name. */
+    public static final byte WORLD = 1;
+    /** Player id, UUID as two longs, name. */
+    public static final byte PLAYER = 2;
+    /** Player id, world id. */
+    public static final byte JOIN = 3;
+    /** Player id. */
+    public static final byte QUIT = 4;
+    /** Player id, id of the world the player is now in. */
+    public static final byte WORLD_CHANGE = 5;
+    /** Player id. */
+    public static final byte BED_ENTER = 6;
+    /** Player id. */
+    public static final byte BED_LEAVE = 7;
+    /** Player id, one of the {@code ACTIVITY_} kinds as a byte. */
+    public static final byte ACTIVITY = 8;
+    /** Player id, x, y, z, yaw, pitch. */
+    public static final byte MOVE = 9;
+    /** Player id, game mode ordinal as a byte, {@code FLAG_} bits as a byte. */
+    public static final byte STATE = 10;
+    /** World id, time of day. */
+    public static final byte TIME = 11;
+    /** No fields, written last with the tick the recording stopped at. */
+    public static final byte END = 12;
+
+    public static final byte ACTIVITY_CHAT = 0;
+    public static final byte ACTIVITY_COMMAND = 1;
+    public static final byte ACTIVITY_CLICK = 2;
+
+    /** Harbor excludes the player from the sleep count, for any reason. */
+    public static final int FLAG_EXCLUDED = 1;
+    /** The player is vanished. */
+    public static final int FLAG_VANISHED = 1 << 1;
+    /** The player is ignored by the server's sleep check. */
+    public static final int FLAG_SLEEPING_IGNORED = 1 << 2;
+
+    private TraceFormat() {
+    }
+}
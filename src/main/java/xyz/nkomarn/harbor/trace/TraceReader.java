@@ -0,0 +1,216 @@
+package xyz.nkomarn.harbor.trace;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a trace written by the {@link TraceRecorder}, passing every record to a {@link Handler} along with the
+ * tick it was recorded at, counted from the start of the recording.
+ *
+ * @see TraceFormat
+ */
+public final class TraceReader implements AutoCloseable {
+    private final DataInputStream in;
+    private final long startedAt;
+    private long tick;
+
+    private TraceReader(@NotNull InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+
+        if (this.in.readInt() != TraceFormat.MAGIC) {
+            throw new IOException("Not a Harbor trace");
+        }
+
+        long version = readVarLong();
+        if (version != TraceFormat.VERSION) {
+            throw new IOException("Unsupported trace version " + version + ", expected " + TraceFormat.VERSION);
+        }
+
+        this.startedAt = this.in.readLong();
+    }
+
+    /**
+     * Opens a trace file.
+     *
+     * @param file The trace file.
+     *
+     * @return A reader positioned at the first record.
+     *
+     * @throws IOException If the file can't be read or isn't a trace.
+     */
+    @NotNull
+    public static TraceReader open(@NotNull File file) throws IOException {
+        InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16), 1 << 16);
+
+        try {
+            return new TraceReader(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The wall clock time the recording started at, in epoch milliseconds.
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Reads every remaining record. A trace that ends without an {@link TraceFormat#END} record, such as one of a
+     * server that crashed, is read up to its last complete record.
+     *
+     * @param handler The handler to pass the records to.
+     *
+     * @return The tick of the last record.
+     *
+     * @throws IOException If the trace can't be read or is malformed.
+     */
+    public long read(@NotNull Handler handler) throws IOException {
+        while (true) {
+            int type = in.read();
+            if (type < 0) {
+                return tick;
+            }
+
+            try {
+                tick += readVarLong();
+
+                switch (type) {
+                    case TraceFormat.WORLD:
+                        handler.world(tick, readVarInt(), readUuid(), readString());
+                        break;
+                    case TraceFormat.PLAYER:
+                        handler.player(tick, readVarInt(), readUuid(), readString());
+                        break;
+                    case TraceFormat.JOIN:
+                        handler.join(tick, readVarInt(), readVarInt());
+                        break;
+                    case TraceFormat.QUIT:
+                        handler.quit(tick, readVarInt());
+                        break;
+                    case TraceFormat.WORLD_CHANGE:
+                        handler.worldChange(tick, readVarInt(), readVarInt());
+                        break;
+                    case TraceFormat.BED_ENTER:
+                        handler.bedEnter(tick, readVarInt());
+                        break;
+                    case TraceFormat.BED_LEAVE:
+                        handler.bedLeave(tick, readVarInt());
+                        break;
+                    case TraceFormat.ACTIVITY:
+                        handler.activity(tick, readVarInt(), in.readByte());
+                        break;
+                    case TraceFormat.MOVE:
+                        handler.move(tick, readVarInt(), in.readFloat(), in.readFloat(), in.readFloat(),
+                                in.readFloat(), in.readFloat());
+                        break;
+                    case TraceFormat.STATE:
+                        handler.state(tick, readVarInt(), in.readUnsignedByte(), in.readUnsignedByte());
+                        break;
+                    case TraceFormat.TIME:
+                        handler.time(tick, readVarInt(), readVarLong());
+                        break;
+                    case TraceFormat.END:
+                        return tick;
+                    default:
+                        throw new IOException("Unknown record type " + type + " at tick " + tick);
+                }
+            } catch (EOFException e) {
+                // Cut off in the middle of a record
+                return tick;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    @NotNull
+    private UUID readUuid() throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    @NotNull
+    private String readString() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Receives the records of a trace. Every method does nothing by default.
+     */
+    public interface Handler {
+        default void world(long tick, int world, @NotNull UUID uuid, @NotNull String name) {
+        }
+
+        default void player(long tick, int player, @NotNull UUID uuid, @NotNull String name) {
+        }
+
+        default void join(long tick, int player, int world) {
+        }
+
+        default void quit(long tick, int player) {
+        }
+
+        default void worldChange(long tick, int player, int world) {
+        }
+
+        default void bedEnter(long tick, int player) {
+        }
+
+        default void bedLeave(long tick, int player) {
+        }
+
+        /**
+         * @param kind One of the {@code ACTIVITY_} kinds of {@link TraceFormat}.
+         */
+        default void activity(long tick, int player, byte kind) {
+        }
+
+        default void move(long tick, int player, float x, float y, float z, float yaw, float pitch) {
+        }
+
+        /**
+         * @param gameMode The ordinal of the player's {@link org.bukkit.GameMode}.
+         * @param flags    The {@code FLAG_} bits of {@link TraceFormat}.
+         */
+        default void state(long tick, int player, int gameMode, int flags) {
+        }
+
+        default void time(long tick, int world, long time) {
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package xyz.nkomarn.harbor.trace;
+
+import io.papermc.paper.event.player.AsyncChatEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.player.PlayerBedEnterEvent;
+import org.bukkit.event.player.PlayerBedLeaveEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.scheduler.HarborScheduler;
+import xyz.nkomarn.harbor.scheduler.HarborTask;
+import xyz.nkomarn.harbor.util.Settings;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the inputs Harbor reacts to into a trace file, so real nights can be replayed offline: beds, joins and
+ * quits, world changes, activity, sampled positions and player states, and the time of every world.
+ * <p>
+ * Records are encoded into an in-memory buffer on the thread the event happened on, which takes a lock but
+ * doesn't allocate. A background thread swaps the buffer out every second and compresses it to disk. If the disk
+ * can't keep up, records are dropped once a few megabytes are waiting, rather than slowing the server down.
+ *
+ * @see TraceFormat
+ */
+public final class TraceRecorder implements Listener {
+    private static final long FLUSH_MILLIS = 1000;
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final int MAX_BUFFERED_BYTES = 8 * 1024 * 1024;
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final Harbor harbor;
+    private final HarborScheduler scheduler;
+    private final File file;
+    private final OutputStream out;
+    private final Object lock;
+    private final Map<UUID, PlayerState> players;
+    private final Map<UUID, Integer> worlds;
+    private final Location location;
+    private final Thread writer;
+    private RecordBuffer buffer;
+    private RecordBuffer spare;
+    private HarborTask ticker;
+    private volatile long tick;
+    private long lastTick;
+    private long records;
+    private long dropped;
+    private boolean closed;
+
+    private TraceRecorder(@NotNull Harbor harbor, @NotNull File file) throws IOException {
+        this.harbor = harbor;
+        this.scheduler = harbor.getHarborScheduler();
+        this.file = file;
+        this.out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file), FLUSH_BYTES), FLUSH_BYTES);
+        this.lock = new Object();
+        this.players = new HashMap<>();
+        this.worlds = new HashMap<>();
+        this.location = new Location(null, 0, 0, 0);
+        this.buffer = new RecordBuffer();
+        this.spare = new RecordBuffer();
+        this.writer = new Thread(this::write, "Harbor Trace Writer");
+        this.writer.setDaemon(true);
+
+        RecordBuffer header = new RecordBuffer();
+        header.writeInt(TraceFormat.MAGIC);
+        header.writeVarLong(TraceFormat.VERSION);
+        header.writeLong(System.currentTimeMillis());
+        header.writeTo(out);
+    }
+
+    /**
+     * Starts recording into a new file in the {@code traces} folder of Harbor's data folder.
+     *
+     * @param harbor The Harbor instance.
+     *
+     * @return The running recorder.
+     *
+     * @throws IOException If the trace file can't be created.
+     */
+    @NotNull
+    public static TraceRecorder start(@NotNull Harbor harbor) throws IOException {
+        File directory = new File(harbor.getDataFolder(), "traces");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+
+        String name = "harbor-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".trace.gz";
+        TraceRecorder recorder = new TraceRecorder(harbor, new File(directory, name));
+
+        // Everything that is already going on, so the trace can be replayed on its own
+        for (World world : Bukkit.getWorlds()) {
+            recorder.recordTime(world);
+        }
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            // Locations and bed states must be read on the thread that owns the player
+            recorder.scheduler.runForEntity(player, () -> {
+                recorder.recordJoin(player);
+                if (player.isSleeping()) {
+                    recorder.recordPlayer(TraceFormat.BED_ENTER, player);
+                }
+            });
+        }
+
+        harbor.getServer().getPluginManager().registerEvents(recorder, harbor);
+        recorder.ticker = recorder.scheduler.runGlobalTimer(recorder::tick, 1, 1);
+        recorder.writer.start();
+        harbor.getLogger().info("Recording a trace to " + recorder.file.getPath());
+        return recorder;
+    }
+
+    /**
+     * Stops recording, and waits for everything recorded so far to be written.
+     */
+    public void stop() {
+        HandlerList.unregisterAll(this);
+        ticker.cancel();
+
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            header(TraceFormat.END);
+            closed = true;
+            lock.notifyAll();
+        }
+
+        try {
+            writer.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        harbor.getLogger().info("Stopped recording the trace to " + file.getPath() + " after " + getRecords()
+                + " records (" + getDropped() + " dropped, " + file.length() / 1024 + " KB)");
+    }
+
+    @NotNull
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return How many records were written to the trace.
+     */
+    public long getRecords() {
+        synchronized (lock) {
+            return records;
+        }
+    }
+
+    /**
+     * @return How many records were dropped because the writer couldn't keep up.
+     */
+    public long getDropped() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(@NotNull PlayerJoinEvent event) {
+        recordJoin(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        recordPlayer(TraceFormat.QUIT, event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChanged(@NotNull PlayerChangedWorldEvent event) {
+        Player player = event.getPlayer();
+
+        synchronized (lock) {
+            if (accept()) {
+                int id = playerId(player).id;
+                int world = worldId(player.getWorld());
+                header(TraceFormat.WORLD_CHANGE);
+                buffer.writeVarLong(id);
+                buffer.writeVarLong(world);
+            }
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBedEnter(@NotNull PlayerBedEnterEvent event) {
+        if (event.getBedEnterResult() == PlayerBedEnterEvent.BedEnterResult.OK) {
+            recordPlayer(TraceFormat.BED_ENTER, event.getPlayer());
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBedLeave(@NotNull PlayerBedLeaveEvent event) {
+        recordPlayer(TraceFormat.BED_LEAVE, event.getPlayer());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onChat(@NotNull AsyncChatEvent event) {
+        recordActivity(event.getPlayer(), TraceFormat.ACTIVITY_CHAT);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onCommand(@NotNull PlayerCommandPreprocessEvent event) {
+        recordActivity(event.getPlayer(), TraceFormat.ACTIVITY_COMMAND);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryClick(@NotNull InventoryClickEvent event) {
+        if (event.getWhoClicked() instanceof Player) {
+            recordActivity((Player) event.getWhoClicked(), TraceFormat.ACTIVITY_CLICK);
+        }
+    }
+
+    /**
+     * Counts the ticks of the recording, and samples worlds and players at their configured intervals.
+     */
+    private void tick() {
+        long now = ++tick;
+        Settings settings = harbor.getConfiguration().getSettings();
+
+        if (now % settings.getTraceTimeInterval() == 0) {
+            for (World world : Bukkit.getWorlds()) {
+                recordTime(world);
+            }
+        }
+
+        if (now % settings.getTraceSampleInterval() == 0) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (!scheduler.isRegionized()) {
+                    // Single threaded, so the location can be reused for every sample
+                    sample(player, player.getLocation(location));
+                    continue;
+                }
+
+                // Locations must be read on the thread that owns the player
+                scheduler.runForEntity(player, () -> sample(player, player.getLocation()));
+            }
+        }
+    }
+
+    private void recordJoin(@NotNull Player player) {
+        synchronized (lock) {
+            if (accept()) {
+                PlayerState state = playerId(player);
+                int world = worldId(player.getWorld());
+                header(TraceFormat.JOIN);
+                buffer.writeVarLong(state.id);
+                buffer.writeVarLong(world);
+                // Written again with the first sample
+                state.gameMode = -1;
+                state.positioned = false;
+            }
+        }
+
+        sample(player, player.getLocation());
+    }
+
+    private void recordPlayer(byte type, @NotNull Player player) {
+        synchronized (lock) {
+            if (accept()) {
+                int id = playerId(player).id;
+                header(type);
+                buffer.writeVarLong(id);
+            }
+        }
+    }
+
+    private void recordActivity(@NotNull Player player, byte kind) {
+        synchronized (lock) {
+            if (accept()) {
+                int id = playerId(player).id;
+                header(TraceFormat.ACTIVITY);
+                buffer.writeVarLong(id);
+                buffer.writeByte(kind);
+            }
+        }
+    }
+
+    private void recordTime(@NotNull World world) {
+        long time = world.getTime();
+
+        synchronized (lock) {
+            if (accept()) {
+                int id = worldId(world);
+                header(TraceFormat.TIME);
+                buffer.writeVarLong(id);
+                buffer.writeVarLong(time);
+            }
+        }
+    }
+
+    /**
+     * Records the state and position of a player, if either changed since the last sample.
+     */
+    private void sample(@NotNull Player player, @NotNull Location location) {
+        int gameMode = player.getGameMode().ordinal();
+        // The decision the sleep index made, rather than asking the providers or permission plugins again
+        int flags = (harbor.getChecker().getSleepIndex().isExcluded(player) ? TraceFormat.FLAG_EXCLUDED : 0)
+                | (harbor.getVanishTracker().isVanished(player) ? TraceFormat.FLAG_VANISHED : 0)
+                | (player.isSleepingIgnored() ? TraceFormat.FLAG_SLEEPING_IGNORED : 0);
+        float x = (float) location.getX();
+        float y = (float) location.getY();
+        float z = (float) location.getZ();
+        float yaw = location.getYaw();
+        float pitch = location.getPitch();
+
+        synchronized (lock) {
+            PlayerState state = players.get(player.getUniqueId());
+            if (state == null) {
+                return;
+            }
+
+            if ((gameMode != state.gameMode || flags != state.flags) && accept()) {
+                state.gameMode = gameMode;
+                state.flags = flags;
+                header(TraceFormat.STATE);
+                buffer.writeVarLong(state.id);
+                buffer.writeByte(gameMode);
+                buffer.writeByte(flags);
+            }
+
+            boolean moved = !state.positioned || x != state.x || y != state.y || z != state.z
+                    || yaw != state.yaw || pitch != state.pitch;
+            if (moved && accept()) {
+                state.positioned = true;
+                state.x = x;
+                state.y = y;
+                state.z = z;
+                state.yaw = yaw;
+                state.pitch = pitch;
+                header(TraceFormat.MOVE);
+                buffer.writeVarLong(state.id);
+                buffer.writeFloat(x);
+                buffer.writeFloat(y);
+                buffer.writeFloat(z);
+                buffer.writeFloat(yaw);
+                buffer.writeFloat(pitch);
+            }
+        }
+    }
+
+    /**
+     * Checks whether another record fits, counting it as dropped if it doesn't. Must hold the lock.
+     */
+    private boolean accept() {
+        if (closed) {
+            return false;
+        }
+
+        if (buffer.size() >= MAX_BUFFERED_BYTES) {
+            dropped++;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Starts a record of the given type at the current tick. Must hold the lock.
+     */
+    private void header(byte type) {
+        long now = tick;
+        buffer.writeByte(type);
+        buffer.writeVarLong(now - lastTick);
+        lastTick = now;
+        records++;
+
+        if (buffer.size() >= FLUSH_BYTES) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Looks up the id of a player, defining it first if the player wasn't seen before. Must hold the lock.
+     */
+    @NotNull
+    private PlayerState playerId(@NotNull Player player) {
+        PlayerState state = players.get(player.getUniqueId());
+        if (state != null) {
+            return state;
+        }
+
+        state = new PlayerState(players.size());
+        players.put(player.getUniqueId(), state);
+        header(TraceFormat.PLAYER);
+        buffer.writeVarLong(state.id);
+        buffer.writeUuid(player.getUniqueId());
+        buffer.writeString(player.getName());
+        return state;
+    }
+
+    /**
+     * Looks up the id of a world, defining it first if the world wasn't seen before. Must hold the lock.
+     */
+    private int worldId(@NotNull World world) {
+        Integer id = worlds.get(world.getUID());
+        if (id != null) {
+            return id;
+        }
+
+        int defined = worlds.size();
+        worlds.put(world.getUID(), defined);
+        header(TraceFormat.WORLD);
+        buffer.writeVarLong(defined);
+        buffer.writeUuid(world.getUID());
+        buffer.writeString(world.getName());
+        return defined;
+    }
+
+    /**
+     * Runs on the writer thread, writing the filled buffer while the other one is being filled.
+     */
+    private void write() {
+        try {
+            boolean done;
+            do {
+                RecordBuffer pending;
+                synchronized (lock) {
+                    if (!closed && buffer.size() < FLUSH_BYTES) {
+                        lock.wait(FLUSH_MILLIS);
+                    }
+
+                    pending = buffer;
+                    buffer = spare;
+                    spare = pending;
+                    done = closed;
+                }
+
+                pending.writeTo(out);
+                pending.reset();
+            } while (!done);
+
+            out.close();
+        } catch (IOException e) {
+            harbor.getLogger().log(Level.WARNING, "Failed to write the trace to " + file.getPath() + ", stopped recording", e);
+            synchronized (lock) {
+                closed = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * What was last recorded about a player
+     */
+    private static final class PlayerState {
+        private final int id;
+        private int gameMode = -1;
+        private int flags;
+        private boolean positioned;
+        private float x;
+        private float y;
+        private float z;
+        private float yaw;
+        private float pitch;
+
+        private PlayerState(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * A growable byte array with the encodings of {@link TraceFormat}
+     */
+    private static final class RecordBuffer {
+        private byte[] data = new byte[FLUSH_BYTES * 2];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            data[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            data[size++] = (byte) (value >>> 24);
+            data[size++] = (byte) (value >>> 16);
+            data[size++] = (byte) (value >>> 8);
+            data[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeFloat(float value) {
+            writeInt(Float.floatToIntBits(value));
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeUuid(@NotNull UUID uuid) {
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+        }
+
+        void writeString(@NotNull String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, data, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeTo(@NotNull OutputStream out) throws IOException {
+            out.write(data, 0, size);
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + bytes));
+            }
+        }
+    }
+}
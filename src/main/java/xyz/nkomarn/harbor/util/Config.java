@@ -8,10 +8,12 @@ import java.util.List;
 
 public class Config {
     private final Harbor harbor;
+    private volatile Settings settings;
 
     public Config(@NotNull Harbor harbor) {
         this.harbor = harbor;
         harbor.saveDefaultConfig();
+        this.settings = Settings.load(getConfig(), harbor.getLogger());
     }
 
     /**
@@ -24,11 +26,23 @@ public class Config {
         return harbor.getConfig();
     }
 
+    /**
+     * Returns the compiled settings of the currently loaded configuration. The returned object is
+     * immutable and replaced as a whole on reload, so it is safe to read from any thread.
+     *
+     * @return The current settings.
+     */
+    @NotNull
+    public Settings getSettings() {
+        return settings;
+    }
+
     /**
      * Reloads the configuration, loading any new changes.
      */
     public void reload() {
         harbor.reloadConfig();
+        settings = Settings.load(getConfig(), harbor.getLogger());
     }
 
     /**
@@ -0,0 +1,112 @@
+package xyz.nkomarn.harbor.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * The placeholders that can be used in Harbor's messages, either as a MiniMessage tag ({@code <sleeping>})
+ * or in the legacy bracket form ({@code [sleeping]}).
+ */
+public enum MessagePlaceholder {
+    SLEEPING("sleeping", false),
+    PLAYERS("players", false),
+    NEEDED("needed", false),
+    MORE("more", false),
+    TIMESCALE("timescale", false),
+    HOURS_12("12h", false),
+    HOURS_24("24h", false),
+    MINUTES("min", false),
+    MERIDIEM_UPPER("mer_upper", false),
+    MERIDIEM_LOWER("mer_lower", false),
+    PLAYER("player", true),
+    DISPLAY_NAME("displayname", true);
+
+    private static final MessagePlaceholder[] VALUES = values();
+
+    private final String key;
+    private final boolean perPlayer;
+
+    MessagePlaceholder(@NotNull String key, boolean perPlayer) {
+        this.key = key;
+        this.perPlayer = perPlayer;
+    }
+
+    /**
+     * @return The name of the placeholder, as used in messages.
+     */
+    @NotNull
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return Whether the value of this placeholder depends on the player the message is rendered for.
+     */
+    public boolean isPerPlayer() {
+        return perPlayer;
+    }
+
+    /**
+     * Computes the value of a world-scoped placeholder.
+     *
+     * @param snapshot The sleep state of the world to compute the value for.
+     *
+     * @return The value of this placeholder, or null for per-player placeholders.
+     */
+    @Nullable
+    public String value(@NotNull WorldSleepSnapshot snapshot) {
+        long time = snapshot.getTime();
+
+        switch (this) {
+            case SLEEPING:
+                return String.valueOf(snapshot.getSleeping());
+            case PLAYERS:
+                return String.valueOf(snapshot.getPlayers());
+            case NEEDED:
+                return String.valueOf(snapshot.getSkipAmount());
+            case MORE:
+                return String.valueOf(snapshot.getNeeded());
+            case TIMESCALE:
+                return String.format("%.2f", snapshot.getTimescale());
+            case HOURS_12:
+                return String.valueOf(Time.ticksTo12Hours(time));
+            case HOURS_24:
+                return twoDigits(Time.ticksTo24Hours(time));
+            case MINUTES:
+                return twoDigits(Time.ticksToMinutes(time));
+            case MERIDIEM_UPPER:
+                return Time.ticksIsAM(time) ? "AM" : "PM";
+            case MERIDIEM_LOWER:
+                return Time.ticksIsAM(time) ? "am" : "pm";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Finds a placeholder by its key.
+     *
+     * @param key The key of the placeholder.
+     *
+     * @return The placeholder, or null if no placeholder uses the given key.
+     */
+    @Nullable
+    public static MessagePlaceholder fromKey(@NotNull String key) {
+        String lowerKey = key.toLowerCase(Locale.ROOT);
+
+        for (MessagePlaceholder placeholder : VALUES) {
+            if (placeholder.key.equals(lowerKey)) {
+                return placeholder;
+            }
+        }
+
+        return null;
+    }
+
+    @NotNull
+    private static String twoDigits(int value) {
+        return value < 10 && value >= 0 ? "0" + value : String.valueOf(value);
+    }
+}
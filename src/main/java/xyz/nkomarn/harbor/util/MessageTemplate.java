@@ -0,0 +1,508 @@
+package xyz.nkomarn.harbor.util;
+
+import me.clip.placeholderapi.PlaceholderAPI;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TranslatableComponent;
+import net.kyori.adventure.text.TranslationArgument;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.nkomarn.harbor.metrics.HarborMetrics;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A message that is parsed once into a component tree with a slot for every placeholder it uses. Rendering only
+ * computes those placeholders, turns the values that changed since the last render into components and rebuilds
+ * the branches of the tree that lead to a slot; the message itself is never parsed again.
+ * <p>
+ * World-scoped templates are rendered once per world and shared by every player in it; per-player templates
+ * (using {@code <player>}, {@code <displayname>} or PlaceholderAPI) are rendered once per player.
+ * <p>
+ * PlaceholderAPI results are cached per player for a configurable time, since expansions may be expensive.
+ * Templates without any {@code %placeholder%} never call into PlaceholderAPI.
+ * <p>
+ * Placeholders used inside the arguments of a tag, such as in a click or hover event, can't be slotted. Messages
+ * that use them are parsed again whenever one of their values changed instead.
+ */
+public final class MessageTemplate {
+    private static final Pattern BRACKET_PLACEHOLDER = Pattern.compile("\\[([A-Za-z0-9_]+)]");
+    private static final Pattern PAPI_PLACEHOLDER = Pattern.compile("%[^%\\s]+%");
+    private static final String PAPI_TAG = "harbor_papi_";
+    private static final String SLOT_KEY = "harbor.slot.";
+
+    private final MiniMessage miniMessage;
+    private final HarborMetrics metrics;
+    private final String message;
+    private final MessagePlaceholder[] placeholders;
+    /** The PlaceholderAPI placeholders filling the last slots, or the whole message if it isn't slotted. */
+    private final String[] papiSources;
+    /** The parsed message, or null if it is parsed again on every change. */
+    private final Part root;
+    private final boolean perPlayer;
+    private final long papiCacheNanos;
+    private final Map<UUID, Rendered> rendered;
+    private final Map<UUID, PapiResult> papiResults;
+
+    private MessageTemplate(@NotNull MiniMessage miniMessage, @NotNull String message,
+                            @NotNull MessagePlaceholder[] placeholders, @NotNull String[] papiSources,
+                            @Nullable Part root, long papiCacheMillis, @NotNull HarborMetrics metrics) {
+        this.miniMessage = miniMessage;
+        this.metrics = metrics;
+        this.message = message;
+        this.placeholders = placeholders;
+        this.papiSources = papiSources;
+        this.root = root;
+        this.papiCacheNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, papiCacheMillis));
+        this.rendered = new ConcurrentHashMap<>();
+        this.papiResults = new ConcurrentHashMap<>();
+
+        boolean usesPlayer = papiSources.length > 0;
+        for (MessagePlaceholder placeholder : placeholders) {
+            usesPlayer |= placeholder.isPerPlayer();
+        }
+
+        this.perPlayer = usesPlayer;
+    }
+
+    /**
+     * Compiles a raw message. Placeholders in the legacy bracket form ({@code [sleeping]}) are rewritten
+     * to MiniMessage tags.
+     *
+     * @param miniMessage     The MiniMessage instance to parse the message with.
+     * @param message         The raw message.
+     * @param papiPresent     Whether PlaceholderAPI is available.
+     * @param papiCacheMillis How long PlaceholderAPI results are reused for a player, 0 to disable caching.
+     * @param metrics         The metrics to count renders in.
+     *
+     * @return The compiled template.
+     */
+    @NotNull
+    public static MessageTemplate compile(@NotNull MiniMessage miniMessage, @NotNull String message, boolean papiPresent,
+                                          long papiCacheMillis, @NotNull HarborMetrics metrics) {
+        Matcher matcher = BRACKET_PLACEHOLDER.matcher(message);
+        StringBuilder normalized = new StringBuilder(message.length());
+
+        while (matcher.find()) {
+            MessagePlaceholder placeholder = MessagePlaceholder.fromKey(matcher.group(1));
+            String replacement = placeholder == null ? matcher.group() : "<" + placeholder.getKey() + ">";
+            matcher.appendReplacement(normalized, Matcher.quoteReplacement(replacement));
+        }
+
+        matcher.appendTail(normalized);
+
+        String compiled = normalized.toString();
+        Set<MessagePlaceholder> used = EnumSet.noneOf(MessagePlaceholder.class);
+
+        for (MessagePlaceholder placeholder : MessagePlaceholder.values()) {
+            if (compiled.contains("<" + placeholder.getKey() + ">")) {
+                used.add(placeholder);
+            }
+        }
+
+        MessagePlaceholder[] placeholders = used.toArray(new MessagePlaceholder[0]);
+        Set<String> papi = new LinkedHashSet<>();
+        boolean slottable = true;
+
+        if (papiPresent) {
+            Matcher papiMatcher = PAPI_PLACEHOLDER.matcher(compiled);
+
+            while (papiMatcher.find()) {
+                papi.add(papiMatcher.group());
+                slottable &= !isInsideTag(compiled, papiMatcher.start());
+            }
+        }
+
+        if (!slottable) {
+            return new MessageTemplate(miniMessage, compiled, placeholders, new String[]{compiled}, null,
+                    papiCacheMillis, metrics);
+        }
+
+        String[] papiSources = papi.toArray(new String[0]);
+        String source = compiled;
+        TagResolver.Builder resolver = TagResolver.builder();
+        List<String> tags = new ArrayList<>();
+
+        for (int i = 0; i < placeholders.length; i++) {
+            resolver.resolver(Placeholder.component(placeholders[i].getKey(), slot(i)));
+            tags.add("<" + placeholders[i].getKey() + ">");
+        }
+
+        for (int i = 0; i < papiSources.length; i++) {
+            String tag = PAPI_TAG + i;
+            source = source.replace(papiSources[i], "<" + tag + ">");
+            resolver.resolver(Placeholder.component(tag, slot(placeholders.length + i)));
+            tags.add("<" + tag + ">");
+        }
+
+        Part root = Part.compile(miniMessage.deserialize(source, resolver.build()), tags);
+
+        if (root == null) {
+            return new MessageTemplate(miniMessage, compiled, placeholders, papiSources.length == 0 ? papiSources
+                    : new String[]{compiled}, null, papiCacheMillis, metrics);
+        }
+
+        return new MessageTemplate(miniMessage, compiled, placeholders, papiSources, root, papiCacheMillis, metrics);
+    }
+
+    /**
+     * @return Whether the rendered message depends on the player it is rendered for.
+     */
+    public boolean isPerPlayer() {
+        return perPlayer;
+    }
+
+    /**
+     * Renders the message for a world. Per-player placeholders are left as they are.
+     *
+     * @param snapshot The sleep state of the world.
+     *
+     * @return The rendered message.
+     */
+    @NotNull
+    public Component render(@NotNull WorldSleepSnapshot snapshot) {
+        if (message.isEmpty()) {
+            return Component.empty();
+        }
+
+        return render(snapshot.getWorld().getUID(), snapshot, null);
+    }
+
+    /**
+     * Renders the message for a player.
+     *
+     * @param player   The player to render the message for.
+     * @param snapshot The sleep state of the player's world.
+     *
+     * @return The rendered message.
+     */
+    @NotNull
+    public Component render(@NotNull Player player, @NotNull WorldSleepSnapshot snapshot) {
+        if (!perPlayer) {
+            return render(snapshot);
+        }
+
+        return render(player.getUniqueId(), snapshot, player);
+    }
+
+    /**
+     * Drops anything rendered for the given player or world.
+     *
+     * @param uuid The unique id of the player or world.
+     */
+    public void forget(@NotNull UUID uuid) {
+        rendered.remove(uuid);
+        papiResults.remove(uuid);
+    }
+
+    /**
+     * Returns the previously rendered component for the given key if no placeholder value changed since, otherwise
+     * replaces the slots that changed and rebuilds the message around them.
+     *
+     * @param player The player to render the message for, or null to leave the per-player placeholders as they are.
+     */
+    @NotNull
+    private Component render(@NotNull UUID key, @NotNull WorldSleepSnapshot snapshot, @Nullable Player player) {
+        Rendered state = rendered.computeIfAbsent(key, uuid -> new Rendered(placeholders.length + papiSources.length));
+        String[] papi = player == null || papiSources.length == 0 ? null : setPlaceholders(player);
+
+        // A world's state is shared by the region threads of all players in it
+        synchronized (state) {
+            boolean changed = state.component == null;
+
+            for (int i = 0; i < placeholders.length; i++) {
+                MessagePlaceholder placeholder = placeholders[i];
+                Object value;
+
+                if (!placeholder.isPerPlayer()) {
+                    value = placeholder.value(snapshot);
+                } else if (player == null) {
+                    value = null;
+                } else {
+                    value = placeholder == MessagePlaceholder.PLAYER ? player.getName() : player.displayName();
+                }
+
+                changed |= update(state, i, value);
+            }
+
+            for (int i = 0; i < papiSources.length; i++) {
+                changed |= update(state, placeholders.length + i, papi == null ? null : papi[i]);
+            }
+
+            if (!changed) {
+                metrics.getRenderCacheHits().increment();
+                return state.component;
+            }
+
+            state.component = root == null ? parse(state.values) : root.build(state.slots);
+            metrics.getRenders().increment();
+            return state.component;
+        }
+    }
+
+    /**
+     * Stores a new slot value, converting it to a component if the message is slotted.
+     *
+     * @return Whether the value changed.
+     */
+    private boolean update(@NotNull Rendered state, int slot, @Nullable Object value) {
+        if (state.component != null && Objects.equals(state.values[slot], value)) {
+            return false;
+        }
+
+        state.values[slot] = value;
+        if (root != null) {
+            state.slots[slot] = toComponent(slot, value);
+        }
+
+        return true;
+    }
+
+    @NotNull
+    private Component toComponent(int slot, @Nullable Object value) {
+        if (value == null) {
+            // Left as written, as if the placeholder weren't known
+            return Component.text(slot < placeholders.length ? "<" + placeholders[slot].getKey() + ">"
+                    : papiSources[slot - placeholders.length]);
+        }
+
+        if (value instanceof Component) {
+            return (Component) value;
+        }
+
+        String text = (String) value;
+        // Most values are plain numbers and times, which don't need a parser
+        if (text.indexOf('<') < 0 && text.indexOf('\\') < 0) {
+            return Component.text(text);
+        }
+
+        return miniMessage.deserialize(text);
+    }
+
+    /**
+     * Parses the whole message with the given values, for messages that can't be slotted.
+     */
+    @NotNull
+    private Component parse(@NotNull Object[] values) {
+        TagResolver.Builder resolver = TagResolver.builder();
+
+        for (int i = 0; i < placeholders.length; i++) {
+            Object value = values[i];
+
+            if (value instanceof Component) {
+                resolver.resolver(Placeholder.component(placeholders[i].getKey(), (Component) value));
+            } else if (value != null) {
+                resolver.resolver(Placeholder.parsed(placeholders[i].getKey(), (String) value));
+            }
+        }
+
+        Object papi = papiSources.length == 0 ? null : values[placeholders.length];
+        return miniMessage.deserialize(papi == null ? message : (String) papi, resolver.build());
+    }
+
+    /**
+     * Applies PlaceholderAPI to the placeholders of the message for the given player, reusing the last results
+     * while they are fresh.
+     */
+    @NotNull
+    private String[] setPlaceholders(@NotNull Player player) {
+        long now = System.nanoTime();
+        PapiResult cached = papiResults.get(player.getUniqueId());
+
+        if (papiCacheNanos != 0 && cached != null && now - cached.resolvedAt < papiCacheNanos) {
+            return cached.values;
+        }
+
+        String[] values = new String[papiSources.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = PlaceholderAPI.setPlaceholders(player, papiSources[i]);
+        }
+
+        if (papiCacheNanos != 0) {
+            papiResults.put(player.getUniqueId(), new PapiResult(values, now));
+        }
+
+        return values;
+    }
+
+    /**
+     * Checks whether the given position of a message is within the arguments of a tag.
+     */
+    private static boolean isInsideTag(@NotNull String message, int index) {
+        return message.lastIndexOf('<', index) > message.lastIndexOf('>', index);
+    }
+
+    @NotNull
+    private static Component slot(int index) {
+        return Component.translatable(SLOT_KEY + index);
+    }
+
+    private static int slotOf(@NotNull Component component) {
+        if (component instanceof TranslatableComponent) {
+            String key = ((TranslatableComponent) component).key();
+
+            if (key.startsWith(SLOT_KEY)) {
+                return Integer.parseInt(key.substring(SLOT_KEY.length()));
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * A node of a parsed message. Nodes without any slot below them are kept as they were parsed.
+     */
+    private static final class Part {
+        private final Component component;
+        private final int slot;
+        private final Part[] children;
+
+        private Part(@NotNull Component component, int slot, @Nullable Part[] children) {
+            this.component = component;
+            this.slot = slot;
+            this.children = children;
+        }
+
+        /**
+         * @param tags The slot tags, as they are left in arguments that aren't parsed.
+         *
+         * @return The compiled node, or null if a slot is somewhere it can't be replaced.
+         */
+        @Nullable
+        private static Part compile(@NotNull Component component, @NotNull List<String> tags) {
+            int slot = slotOf(component);
+            if (slot >= 0) {
+                return new Part(component, slot, null);
+            }
+
+            if (hasSlotInArguments(component, tags)) {
+                return null;
+            }
+
+            List<Component> children = component.children();
+            Part[] parts = new Part[children.size()];
+            boolean slotted = false;
+
+            for (int i = 0; i < parts.length; i++) {
+                Part part = compile(children.get(i), tags);
+                if (part == null) {
+                    return null;
+                }
+
+                parts[i] = part;
+                slotted |= part.slot >= 0 || part.children != null;
+            }
+
+            return new Part(component, -1, slotted ? parts : null);
+        }
+
+        private static boolean hasSlotInArguments(@NotNull Component component, @NotNull List<String> tags) {
+            HoverEvent<?> hover = component.hoverEvent();
+            if (hover != null && hover.value() instanceof Component && hasSlot((Component) hover.value())) {
+                return true;
+            }
+
+            ClickEvent click = component.clickEvent();
+            if (click != null && containsTag(click.value(), tags)) {
+                return true;
+            }
+
+            String insertion = component.insertion();
+            if (insertion != null && containsTag(insertion, tags)) {
+                return true;
+            }
+
+            if (component instanceof TranslatableComponent) {
+                for (TranslationArgument argument : ((TranslatableComponent) component).arguments()) {
+                    if (hasSlot(argument.asComponent())) {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        private static boolean hasSlot(@NotNull Component component) {
+            if (slotOf(component) >= 0 || hasSlotInArguments(component, List.of())) {
+                return true;
+            }
+
+            for (Component child : component.children()) {
+                if (hasSlot(child)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static boolean containsTag(@NotNull String value, @NotNull List<String> tags) {
+            for (String tag : tags) {
+                if (value.contains(tag)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @NotNull
+        private Component build(@NotNull Component[] slots) {
+            if (slot >= 0) {
+                return slots[slot].applyFallbackStyle(component.style());
+            }
+
+            if (children == null) {
+                return component;
+            }
+
+            List<Component> built = new ArrayList<>(children.length);
+            for (Part child : children) {
+                built.add(child.build(slots));
+            }
+
+            return component.children(built);
+        }
+    }
+
+    private static final class PapiResult {
+        private final String[] values;
+        private final long resolvedAt;
+
+        private PapiResult(@NotNull String[] values, long resolvedAt) {
+            this.values = values;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+
+    /**
+     * What was last rendered for a player or world, updated in place under its own lock.
+     */
+    private static final class Rendered {
+        private final Object[] values;
+        private final Component[] slots;
+        private Component component;
+
+        private Rendered(int slots) {
+            this.values = new Object[slots];
+            this.slots = new Component[slots];
+        }
+    }
+}
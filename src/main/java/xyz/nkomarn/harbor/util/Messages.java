@@ -1,44 +1,46 @@
 package xyz.nkomarn.harbor.util;
 
 import com.google.common.base.Enums;
-import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.bossbar.BossBar;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
-import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
-import net.kyori.adventure.title.Title;
-import net.kyori.adventure.util.Ticks;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
-import xyz.nkomarn.harbor.task.Checker;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Messages implements Listener {
     private final MiniMessage miniMessage;
     private final Harbor harbor;
     private final Config config;
-    private final HashMap<UUID, BossBar> bossBars;
+    private final Map<UUID, WorldBossBar> bossBars;
+    private final Map<String, MessageTemplate> templates;
+    private final UiUpdateQueue uiQueue;
     private final boolean papiPresent;
 
     public Messages(@NotNull Harbor harbor) {
         this.harbor = harbor;
         this.config = harbor.getConfiguration();
-        this.bossBars = new HashMap<>();
+        this.bossBars = new ConcurrentHashMap<>();
+        this.templates = new ConcurrentHashMap<>();
+        this.uiQueue = new UiUpdateQueue(harbor);
         this.papiPresent = harbor.getServer().getPluginManager().isPluginEnabled("PlaceholderAPI");
         this.miniMessage = harbor.getMiniMessage();
 
         for (World world : Bukkit.getWorlds()) {
             if (harbor.getChecker().isBlacklisted(world)) {
-                return;
+                continue;
             }
 
             registerBar(world);
@@ -53,12 +55,27 @@ public class Messages implements Listener {
      * @param players Players to send the title to
      */
     public void sendTitleMessage(@NotNull List<Player> players, @NotNull String title, @NotNull String subTitle) {
-        if (!config.getBoolean("messages.title.enabled") || (title.isEmpty() & subTitle.isEmpty())) {
+        for (Player player : players) {
+            sendTitleMessage(player, title, subTitle);
+        }
+    }
+
+    /**
+     * Sends a title/subtitle message to the given players, using the given snapshot for world placeholders
+     *
+     * @param snapshot The sleep state of the world the players are in.
+     * @param players Players to send the title to
+     * @param title The title message to send.
+     * @param subTitle The subtitle message to send.
+     */
+    public void sendTitleMessage(@NotNull WorldSleepSnapshot snapshot, @NotNull List<Player> players,
+                                 @NotNull String title, @NotNull String subTitle) {
+        if (!config.getSettings().isTitleEnabled() || (title.isEmpty() & subTitle.isEmpty())) {
             return;
         }
 
         for (Player player : players) {
-            sendTitleMessage(player, title, subTitle);
+            sendTitleMessage(player, snapshot, title, subTitle);
         }
     }
 
@@ -70,16 +87,36 @@ public class Messages implements Listener {
      * @param player Player to send the title to
      */
     public void sendTitleMessage(@NotNull Player player, @NotNull String title, @NotNull String subTitle) {
-        if (!config.getBoolean("messages.title.enabled") || (title.isEmpty() & subTitle.isEmpty())) {
+        sendTitleMessage(player, harbor.getChecker().getSnapshot(player.getWorld()), title, subTitle);
+    }
+
+    /**
+     * Sends a title/subtitle message to the given player, using the given snapshot for world placeholders.
+     * The title is queued and rendered as it is sent with the next flush, unless the same title is still on the
+     * player's screen.
+     *
+     * @param player Player to send the title to
+     * @param snapshot The sleep state of the world the player is in.
+     * @param title The title message to send.
+     * @param subTitle The subtitle message to send.
+     */
+    public void sendTitleMessage(@NotNull Player player, @NotNull WorldSleepSnapshot snapshot,
+                                 @NotNull String title, @NotNull String subTitle) {
+        Settings settings = config.getSettings();
+
+        if (!settings.isTitleEnabled() || (title.isEmpty() & subTitle.isEmpty())) {
             return;
         }
 
-        int fadeTicks = config.getInteger("messages.title.fade-ticks");
-        int stayTicks = config.getInteger("messages.title.stay-ticks");
-        player.showTitle(Title.title(
-                prepareMessage(player, title),
-                prepareMessage(player, subTitle),
-                Title.Times.times(Ticks.duration(0), Ticks.duration(stayTicks), Ticks.duration(fadeTicks))));
+        uiQueue.queueTitle(player, snapshot, getTemplate(title), getTemplate(subTitle), settings.getTitleStayTicks(),
+                settings.getTitleFadeTicks());
+    }
+
+    /**
+     * Sends all queued titles and bossbar updates.
+     */
+    public void flush() {
+        uiQueue.flush();
     }
 
     /**
@@ -91,25 +128,55 @@ public class Messages implements Listener {
      * @param percentage The bossbar percentage to set.
      */
     public void sendBossBarMessage(@NotNull World world, @NotNull String message, @NotNull String color, float percentage) {
-        if (!config.getBoolean("messages.bossbar.enabled") || message.isEmpty()) {
+        sendBossBarMessage(harbor.getChecker().getSnapshot(world), message, color, percentage);
+    }
+
+    /**
+     * Sets the message for the bossbar of the given snapshot's world.
+     *
+     * @param snapshot   The sleep state of the world in which the bossbar exists.
+     * @param message    The message to set.
+     * @param color      The bossbar color to set.
+     * @param percentage The bossbar percentage to set.
+     */
+    public void sendBossBarMessage(@NotNull WorldSleepSnapshot snapshot, @NotNull String message, @NotNull String color, float percentage) {
+        sendBossBarMessage(snapshot, message, Enums.getIfPresent(BossBar.Color.class, color).or(BossBar.Color.BLUE), percentage);
+    }
+
+    /**
+     * Sets the message for the bossbar of the given snapshot's world.
+     *
+     * @param snapshot   The sleep state of the world in which the bossbar exists.
+     * @param message    The message to set.
+     * @param color      The bossbar color to set.
+     * @param percentage The bossbar percentage to set.
+     */
+    public void sendBossBarMessage(@NotNull WorldSleepSnapshot snapshot, @NotNull String message, @NotNull BossBar.Color color, float percentage) {
+        if (!config.getSettings().isBossBarEnabled() || message.isEmpty()) {
             return;
         }
 
-        BossBar bar = bossBars.get(world.getUID());
+        World world = snapshot.getWorld();
+        // Worlds only get a bar up front if they aren't blacklisted, which may change on reload
+        WorldBossBar bar = registerBar(world);
 
-        if (bar == null) {
+        if (percentage == 0) {
+            uiQueue.cancelBossBar(bar);
+            bar.hide();
             return;
         }
 
-        if (percentage == 0) {
-            Bukkit.getOnlinePlayers().forEach(p -> p.hideBossBar(bar));
+        Component name = prepareMessage(snapshot, message);
+
+        if (bar.isVisible()) {
+            uiQueue.queueBossBar(bar, name, color, percentage);
             return;
         }
 
-        bar.name(harbor.getMessages().prepareMessage(world, message));
-        bar.color(Enums.getIfPresent(BossBar.Color.class, color).or(BossBar.Color.BLUE));
-        bar.progress(percentage);
-        world.getPlayers().forEach(p -> p.showBossBar(bar));
+        // Only shown to the whole world once, players entering the world afterwards are added as they come
+        uiQueue.cancelBossBar(bar);
+        harbor.getMetrics().getBossBarUpdates().add(bar.update(name, color, percentage));
+        bar.show(harbor.getChecker().getSleepIndex().getPlayers(world));
     }
 
     /**
@@ -120,46 +187,44 @@ public class Messages implements Listener {
      * @return The provided message with placeholders replaced with correct values for the world context.
      */
     public @NotNull Component prepareMessage(@NotNull World world, @NotNull String message) {
-        TagResolver.@NotNull Builder placeholders = TagResolver.builder();
-
-        worldPlaceholders(world, placeholders);
+        return prepareMessage(harbor.getChecker().getSnapshot(world), message);
+    }
 
-        return miniMessage.deserialize(message, placeholders.build());
+    /**
+     * Replaces all available placeholders in a given string.
+     *
+     * @param snapshot The sleep state of the world context.
+     * @param message  The raw message with placeholders.
+     * @return The provided message with placeholders replaced with correct values for the world context.
+     */
+    public @NotNull Component prepareMessage(@NotNull WorldSleepSnapshot snapshot, @NotNull String message) {
+        return getTemplate(message).render(snapshot);
     }
 
     public @NotNull Component prepareMessage(@NotNull Player player, @NotNull String message) {
-        World world = player.getLocation().getWorld();
-
-        if (papiPresent) {
-            message = PlaceholderAPI.setPlaceholders(player, message);
-        }
-
-        TagResolver.@NotNull Builder placeholders = TagResolver.builder();
-
-        placeholders.resolver(Placeholder.parsed("player", player.getName()));
-        placeholders.resolver(Placeholder.component("displayname", player.displayName()));
-
-        if(world != null) {
-            worldPlaceholders(world, placeholders);
-        }
+        return prepareMessage(player, harbor.getChecker().getSnapshot(player.getWorld()), message);
+    }
 
-        return miniMessage.deserialize(message, placeholders.build());
+    public @NotNull Component prepareMessage(@NotNull Player player, @NotNull WorldSleepSnapshot snapshot, @NotNull String message) {
+        return getTemplate(message).render(player, snapshot);
     }
 
-    private void worldPlaceholders(World world, TagResolver.Builder builder) {
-        Checker checker = harbor.getChecker();
-        long time = world.getTime();
+    /**
+     * Returns the compiled template for the given raw message, compiling it on first use.
+     *
+     * @param message The raw message with placeholders.
+     * @return The compiled template.
+     */
+    public @NotNull MessageTemplate getTemplate(@NotNull String message) {
+        return templates.computeIfAbsent(message, raw -> MessageTemplate.compile(miniMessage, raw, papiPresent,
+                config.getSettings().getPlaceholderApiCacheMillis(), harbor.getMetrics()));
+    }
 
-        builder.resolver(Placeholder.parsed("sleeping", String.valueOf(checker.getSleepingPlayers(world).size())));
-        builder.resolver(Placeholder.parsed("players", String.valueOf(checker.getPlayers(world))));
-        builder.resolver(Placeholder.parsed("needed", String.valueOf(checker.getSkipAmount(world))));
-        builder.resolver(Placeholder.parsed("timescale", String.format("%.2f", checker.getTimescale(world))));
-        builder.resolver(Placeholder.parsed("12h", String.valueOf(Time.ticksTo12Hours(time))));
-        builder.resolver(Placeholder.parsed("24h", String.format("%02d", Time.ticksTo24Hours(time))));
-        builder.resolver(Placeholder.parsed("min", String.format("%02d", Time.ticksToMinutes(time))));
-        builder.resolver(Placeholder.parsed("mer_upper", Time.ticksIsAM(time) ? "AM" : "PM"));
-        builder.resolver(Placeholder.parsed("mer_lower", Time.ticksIsAM(time) ? "am" : "pm"));
-        builder.resolver(Placeholder.parsed("more", String.valueOf(checker.getNeeded(world))));
+    /**
+     * Drops all compiled templates and anything cached for them, so they are compiled again with the current settings.
+     */
+    public void reload() {
+        templates.clear();
     }
 
     /**
@@ -167,9 +232,9 @@ public class Messages implements Listener {
      *
      * @param world The world in which to create the bossbar.
      */
-    private void registerBar(@NotNull World world) {
-        bossBars.computeIfAbsent(world.getUID(), uuid ->
-                BossBar.bossBar(Component.empty(), 0.0f, BossBar.Color.WHITE, BossBar.Overlay.PROGRESS));
+    @NotNull
+    private WorldBossBar registerBar(@NotNull World world) {
+        return bossBars.computeIfAbsent(world.getUID(), uuid -> new WorldBossBar());
     }
 
     /**
@@ -178,18 +243,53 @@ public class Messages implements Listener {
      * @param world The world in which to hide the bossbar.
      */
     public void clearBar(@NotNull World world) {
-        Optional.ofNullable(bossBars.get(world.getUID()))
-                .ifPresent(bar -> Bukkit.getOnlinePlayers().forEach(p -> p.hideBossBar(bar)));
+        Optional.ofNullable(bossBars.get(world.getUID())).ifPresent(bar -> {
+            uiQueue.cancelBossBar(bar);
+            bar.hide();
+        });
     }
 
     @EventHandler
     public void onWorldLoad(@NotNull WorldLoadEvent event) {
-        registerBar(event.getWorld());
+        World world = event.getWorld();
+
+        // Classify new worlds once as they load
+        if (!config.getSettings().getWorldFilter().classify(world)) {
+            registerBar(world);
+        }
+    }
+
+    @EventHandler
+    public void onWorldUnload(@NotNull WorldUnloadEvent event) {
+        UUID uuid = event.getWorld().getUID();
+        config.getSettings().getWorldFilter().forget(event.getWorld());
+        templates.values().forEach(template -> template.forget(uuid));
+        Optional.ofNullable(bossBars.remove(uuid)).ifPresent(WorldBossBar::hide);
+    }
+
+    @EventHandler
+    public void onJoin(@NotNull PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        Optional.ofNullable(bossBars.get(player.getWorld().getUID()))
+                .ifPresent(bossBar -> bossBar.addViewer(player));
+    }
+
+    @EventHandler
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        Player player = event.getPlayer();
+        UUID uuid = player.getUniqueId();
+        templates.values().forEach(template -> template.forget(uuid));
+        uiQueue.cancelTitle(uuid);
+        Optional.ofNullable(bossBars.get(player.getWorld().getUID()))
+                .ifPresent(bossBar -> bossBar.removeViewer(player, false));
     }
 
     @EventHandler
     public void onWorldChanged(PlayerChangedWorldEvent event) {
+        Player player = event.getPlayer();
         Optional.ofNullable(bossBars.get(event.getFrom().getUID()))
-                .ifPresent(bossBar -> event.getPlayer().hideBossBar(bossBar));
+                .ifPresent(bossBar -> bossBar.removeViewer(player, true));
+        Optional.ofNullable(bossBars.get(player.getWorld().getUID()))
+                .ifPresent(bossBar -> bossBar.addViewer(player));
     }
 }
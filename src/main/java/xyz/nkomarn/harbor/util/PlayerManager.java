@@ -7,64 +7,76 @@ import org.bukkit.event.player.PlayerQuitEvent;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.api.AFKProvider;
+import xyz.nkomarn.harbor.api.AFKStatusSink;
 import xyz.nkomarn.harbor.api.LogicType;
+import xyz.nkomarn.harbor.api.PushAFKProvider;
 import xyz.nkomarn.harbor.provider.DefaultAFKProvider;
 import xyz.nkomarn.harbor.provider.EssentialsAFKProvider;
+import xyz.nkomarn.harbor.provider.PollingAFKProviderAdapter;
 
-import java.time.Instant;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PlayerManager implements Listener {
-    private final Map<UUID, Instant> cooldowns;
-    private final Set<AFKProvider> andedProviders;
-    private final Set<AFKProvider> oredProviders;
+    private final Harbor harbor;
+    private final Map<UUID, PlayerUiState> uiStates;
+    private final Map<UUID, AtomicLong> afkStatuses;
+    private final Map<PushAFKProvider, Registration> registrations;
+    private final Map<AFKProvider, PushAFKProvider> adapters;
     private final DefaultAFKProvider defaultProvider;
+    private volatile long andedMask;
+    private volatile long oredMask;
 
     public PlayerManager(@NotNull Harbor harbor) {
-        this.cooldowns = new HashMap<>();
-        this.andedProviders = new HashSet<>();
-        this.oredProviders = new HashSet<>();
+        this.harbor = harbor;
+        this.uiStates = new ConcurrentHashMap<>();
+        this.afkStatuses = new ConcurrentHashMap<>();
+        this.registrations = new HashMap<>();
+        this.adapters = new HashMap<>();
         this.defaultProvider = new DefaultAFKProvider(harbor);
 
         updateListeners();
         if (harbor.getEssentials().isPresent()) {
             addAfkProvider(new EssentialsAFKProvider(harbor, harbor.getEssentials().get()),
-                    LogicType.fromConfig(harbor.getConfig(), "essentials-detection-mode", LogicType.AND));
+                    harbor.getConfiguration().getSettings().getAfkEssentialsDetectionMode());
         } else {
             harbor.getLogger().info("Essentials not present - not registering Essentials integration");
         }
     }
 
     /**
-     * Gets the last tracked cooldown time for a given player.
+     * Gets the outbound UI state of a given player, creating it if it doesn't exist yet.
      *
-     * @param player The player for which to return cooldown time.
+     * @param player The player for which to return the UI state.
      *
-     * @return The player's last cooldown time.
+     * @return The player's UI state.
      */
-    public Instant getCooldown(@NotNull Player player) {
-        return cooldowns.getOrDefault(player.getUniqueId(), Instant.MIN);
+    @NotNull
+    public PlayerUiState getUiState(@NotNull Player player) {
+        return uiStates.computeIfAbsent(player.getUniqueId(), uuid -> new PlayerUiState());
     }
 
     /**
-     * Sets a player's cooldown to a specific, fixed value.
+     * Forgets what was last shown to a player, so the next title is always sent.
      *
-     * @param player   The player for which to set cooldown.
-     * @param cooldown The cooldown value.
+     * @param player The player for which to reset the UI state.
      */
-    public void setCooldown(@NotNull Player player, Instant cooldown) {
-        cooldowns.put(player.getUniqueId(), cooldown);
+    public void resetUiState(@NotNull Player player) {
+        PlayerUiState state = uiStates.get(player.getUniqueId());
+
+        if (state != null) {
+            state.reset();
+        }
     }
 
     /**
-     * Resets every players' message cooldown.
+     * Resets every players' UI state.
      */
-    public void clearCooldowns() {
-        cooldowns.clear();
+    public void clearUiStates() {
+        uiStates.clear();
     }
 
     /**
@@ -75,38 +87,75 @@ public class PlayerManager implements Listener {
      * @return Whether the player is considered AFK.
      */
     public boolean isAfk(@NotNull Player player) {
+        long anded = andedMask;
+        long ored = oredMask;
+
         // If there are no providers registered, we go to the default provider
-        if(oredProviders.isEmpty() && andedProviders.isEmpty()){
+        if (anded == 0 && ored == 0) {
             return defaultProvider.isAFK(player);
         }
-        return oredProviders.stream().anyMatch(provider -> provider.isAFK(player)) ||
-                (!andedProviders.isEmpty() && andedProviders.stream().allMatch(provider -> provider.isAFK(player)));
+
+        AtomicLong status = afkStatuses.get(player.getUniqueId());
+        return status != null && combine(status.get(), anded, ored);
     }
 
     @EventHandler
     public void onQuit(@NotNull PlayerQuitEvent event) {
         UUID uuid = event.getPlayer().getUniqueId();
-        cooldowns.remove(uuid);
+        uiStates.remove(uuid);
+        afkStatuses.remove(uuid);
     }
 
 
     /**
-     * Add an AFK Provider to harbor, so an external plugin can provide an AFK status to harbor
+     * Add an AFK Provider to harbor, so an external plugin can provide an AFK status to harbor.
+     * The provider is asked for the status of every online player once per second.
      *
      * @param provider  The {@link AFKProvider} to be added
      * @param logicType The type of logic (And or Or, {@link LogicType}) to be used with the given provider
      */
-    public void addAfkProvider(@NotNull AFKProvider provider, @NotNull LogicType logicType) {
+    public synchronized void addAfkProvider(@NotNull AFKProvider provider, @NotNull LogicType logicType) {
+        if (adapters.containsKey(provider)) {
+            return;
+        }
+
+        PollingAFKProviderAdapter adapter = new PollingAFKProviderAdapter(harbor, provider);
+        adapters.put(provider, adapter);
+        addAfkProvider(adapter, logicType);
+    }
+
+    /**
+     * Add an AFK Provider to harbor that reports status changes itself.
+     *
+     * @param provider  The {@link PushAFKProvider} to be added
+     * @param logicType The type of logic (And or Or, {@link LogicType}) to be used with the given provider
+     */
+    public synchronized void addAfkProvider(@NotNull PushAFKProvider provider, @NotNull LogicType logicType) {
+        if (registrations.containsKey(provider)) {
+            return;
+        }
+
+        long used = andedMask | oredMask;
+        if (used == -1L) {
+            throw new IllegalStateException("Too many AFK providers registered");
+        }
+
+        long bit = Long.lowestOneBit(~used);
+        Registration registration = new Registration(bit);
+        registrations.put(provider, registration);
+
         switch (logicType){
             case AND:
-                andedProviders.add(provider);
+                andedMask |= bit;
                 break;
             case OR:
-                oredProviders.add(provider);
+                oredMask |= bit;
                 break;
             default:
                 throw new IllegalStateException("Invalid logic type specified");
         }
+
+        provider.start(registration);
         updateListeners();
     }
 
@@ -114,17 +163,105 @@ public class PlayerManager implements Listener {
      * Remove an AFK provider from Harbor, provided for external plugins.
      * @param provider the {@link AFKProvider} to be removed.
      */
-    public void removeAfkProvider(@NotNull AFKProvider provider) {
-        andedProviders.remove(provider);
-        oredProviders.remove(provider);
+    public synchronized void removeAfkProvider(@NotNull AFKProvider provider) {
+        PushAFKProvider adapter = adapters.remove(provider);
+        if (adapter != null) {
+            removeAfkProvider(adapter);
+        }
+    }
+
+    /**
+     * Remove an AFK provider from Harbor, provided for external plugins.
+     * @param provider the {@link PushAFKProvider} to be removed.
+     */
+    public synchronized void removeAfkProvider(@NotNull PushAFKProvider provider) {
+        Registration registration = registrations.remove(provider);
+        if (registration == null) {
+            return;
+        }
+
+        provider.stop();
+        andedMask &= ~registration.bit;
+        oredMask &= ~registration.bit;
+
+        // Once dead, the registration rejects any further writes, so the bit is free for the next provider
+        synchronized (registration) {
+            registration.active = false;
+
+            for (AtomicLong status : afkStatuses.values()) {
+                status.getAndUpdate(bits -> bits & ~registration.bit);
+            }
+        }
+
         updateListeners();
     }
 
     private void updateListeners() {
-        if (andedProviders.isEmpty() && oredProviders.isEmpty()) {
+        if (andedMask == 0 && oredMask == 0) {
             defaultProvider.enableListeners();
         } else {
             defaultProvider.disableListeners();
         }
     }
+
+    /**
+     * Combines the bits of the providers reporting a player as AFK; any ORed provider is enough, otherwise
+     * all ANDed providers must agree.
+     */
+    private static boolean combine(long status, long anded, long ored) {
+        return (status & ored) != 0 || (anded != 0 && (status & anded) == anded);
+    }
+
+    /**
+     * A registered {@link PushAFKProvider}, owning a single bit of every player's status. Writes are made under
+     * its lock, which unregistering takes to mark it dead.
+     */
+    private final class Registration implements AFKStatusSink {
+        private final long bit;
+        private volatile boolean active;
+
+        private Registration(long bit) {
+            this.bit = bit;
+            this.active = true;
+        }
+
+        @Override
+        public void setAFK(@NotNull Player player, boolean afk) {
+            if (!active || !player.isOnline()) {
+                return;
+            }
+
+            long previous;
+            long current;
+
+            // Held so the registration can't be unregistered between the check and the write
+            synchronized (this) {
+                if (!active) {
+                    return;
+                }
+
+                AtomicLong status = afk
+                        ? afkStatuses.computeIfAbsent(player.getUniqueId(), uuid -> new AtomicLong())
+                        : afkStatuses.get(player.getUniqueId());
+                if (status == null) {
+                    return;
+                }
+
+                previous = status.getAndUpdate(bits -> afk ? bits | bit : bits & ~bit);
+                current = afk ? previous | bit : previous & ~bit;
+            }
+
+            if (previous == current) {
+                return;
+            }
+
+            long anded = andedMask;
+            long ored = oredMask;
+            if (combine(previous, anded, ored) != combine(current, anded, ored)) {
+                // Let the sleep index pick up the change instead of waiting for the next refresh
+                SleepIndex sleepIndex = harbor.getChecker().getSleepIndex();
+                harbor.getHarborScheduler().runForEntity(player, () -> sleepIndex.update(player));
+            }
+        }
+    }
 }
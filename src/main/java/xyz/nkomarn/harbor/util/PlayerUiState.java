@@ -0,0 +1,49 @@
+package xyz.nkomarn.harbor.util;
+
+import net.kyori.adventure.text.Component;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Remembers what Harbor last showed to a player, so identical titles aren't sent again while still on screen.
+ */
+public final class PlayerUiState {
+    private Component title;
+    private Component subtitle;
+    private int visibleUntilTick;
+
+    /**
+     * Checks if the given title is already fully visible to the player.
+     *
+     * @param title    The title to show.
+     * @param subtitle The subtitle to show.
+     * @param tick     The current server tick.
+     *
+     * @return Whether the same title and subtitle were sent and haven't started fading out yet.
+     */
+    public synchronized boolean isShowing(@NotNull Component title, @NotNull Component subtitle, int tick) {
+        return tick < visibleUntilTick && title.equals(this.title) && subtitle.equals(this.subtitle);
+    }
+
+    /**
+     * Records that a title was sent to the player.
+     *
+     * @param title     The title that was sent.
+     * @param subtitle  The subtitle that was sent.
+     * @param tick      The server tick the title was sent at.
+     * @param stayTicks How long the title stays fully visible.
+     */
+    public synchronized void titleSent(@NotNull Component title, @NotNull Component subtitle, int tick, int stayTicks) {
+        this.title = title;
+        this.subtitle = subtitle;
+        this.visibleUntilTick = tick + stayTicks;
+    }
+
+    /**
+     * Forgets the last sent title, so the next one is always sent.
+     */
+    public synchronized void reset() {
+        this.title = null;
+        this.subtitle = null;
+        this.visibleUntilTick = Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,370 @@
+package xyz.nkomarn.harbor.util;
+
+import com.google.common.base.Enums;
+import net.kyori.adventure.bossbar.BossBar;
+import org.bukkit.GameMode;
+import org.bukkit.Sound;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.nkomarn.harbor.api.LogicType;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * An immutable, typed view of Harbor's configuration, compiled once when the configuration is (re)loaded
+ * so that frequently run code doesn't have to look values up by path.
+ *
+ * @see Config#getSettings()
+ */
+public final class Settings {
+    private final boolean nightSpeedEnabled;
+    private final double minSpeedMultiplier;
+    private final double maxSpeedMultiplier;
+
+    private final boolean nightSkipEnabled;
+    private final double skipPercentage;
+    private final boolean instantSkip;
+    private final double skipSpeedMultiplier;
+
+    private final boolean clearRain;
+    private final boolean clearThunder;
+    private final boolean resetPhantomStatistic;
+    private final Sound morningSound;
+
+    private final boolean excludeIgnoredPermission;
+    private final Set<GameMode> excludedGameModes;
+    private final boolean excludeVanished;
+    private final boolean excludeAfk;
+
+    private final boolean afkFallbackEnabled;
+    private final boolean afkEssentialsEnabled;
+    private final LogicType afkEssentialsDetectionMode;
+    private final int afkFallbackTimeout;
+    private final double afkFallbackMovementThreshold;
+    private final float afkFallbackRotationThreshold;
+    private final int afkFallbackScanPeriod;
+    private final int afkFallbackScanMaxPeriod;
+    private final long afkFallbackScanBudgetNanos;
+
+    private final WorldFilter worldFilter;
+
+    private final boolean titleEnabled;
+    private final String sleepTitle;
+    private final String sleepSubtitle;
+    private final String morningTitle;
+    private final String morningSubtitle;
+    private final int titleStayTicks;
+    private final int titleFadeTicks;
+
+    private final boolean bossBarEnabled;
+    private final String bossBarMessage;
+    private final BossBar.Color bossBarColor;
+
+    private final long placeholderApiCacheMillis;
+
+    private final boolean traceEnabled;
+    private final int traceSampleInterval;
+    private final int traceTimeInterval;
+
+    private final int interval;
+    private final int timeUpdateInterval;
+    private final boolean debug;
+
+    private Settings(@NotNull FileConfiguration config, @NotNull Logger logger) {
+        nightSpeedEnabled = config.getBoolean("night-speed.enabled", false);
+        minSpeedMultiplier = config.getDouble("night-speed.min-speed-multiplier", 0.0);
+        maxSpeedMultiplier = config.getDouble("night-speed.max-speed-multiplier", 0.0);
+
+        nightSkipEnabled = config.getBoolean("night-skip.enabled", false);
+        skipPercentage = config.getDouble("night-skip.skip-percentage", 0.0);
+        instantSkip = config.getBoolean("night-skip.instant-skip", false);
+        skipSpeedMultiplier = config.getDouble("night-skip.skip-speed-multiplier", 0.0);
+
+        clearRain = config.getBoolean("morning.clear-rain", false);
+        clearThunder = config.getBoolean("morning.clear-thunder", false);
+        resetPhantomStatistic = config.getBoolean("morning.reset-phantom-statistic", false);
+        morningSound = Enums.getIfPresent(Sound.class, config.getString("morning.play-sound", "")).orNull();
+
+        excludeIgnoredPermission = config.getBoolean("exclusions.ignored-permission", true);
+        EnumSet<GameMode> gameModes = EnumSet.noneOf(GameMode.class);
+        for (GameMode gameMode : GameMode.values()) {
+            if (config.getBoolean("exclusions.exclude-" + gameMode.name().toLowerCase(Locale.ROOT), false)) {
+                gameModes.add(gameMode);
+            }
+        }
+        excludedGameModes = Collections.unmodifiableSet(gameModes);
+        excludeVanished = config.getBoolean("exclusions.exclude-vanished", false);
+        excludeAfk = config.getBoolean("exclusions.exclude-afk", false);
+
+        afkFallbackEnabled = config.getBoolean("afk-detection.fallback-enabled", true);
+        afkEssentialsEnabled = config.getBoolean("afk-detection.essentials-enabled", true);
+        afkEssentialsDetectionMode = LogicType.fromConfig(config, "afk-detection.essentials-detection-mode", LogicType.AND);
+        afkFallbackTimeout = config.getInt("afk-detection.fallback-timeout", 15);
+        afkFallbackMovementThreshold = Math.max(0, config.getDouble("afk-detection.fallback-movement-threshold", 0.0));
+        afkFallbackRotationThreshold = (float) Math.max(0, config.getDouble("afk-detection.fallback-rotation-threshold", 0.0));
+        afkFallbackScanPeriod = Math.max(1, config.getInt("afk-detection.fallback-scan-period", 20));
+        afkFallbackScanMaxPeriod = Math.max(afkFallbackScanPeriod, config.getInt("afk-detection.fallback-scan-max-period", 200));
+        afkFallbackScanBudgetNanos = Math.max(0, config.getLong("afk-detection.fallback-scan-budget", 0)) * 1000L;
+
+        worldFilter = WorldFilter.compile(config.getStringList("blacklisted-worlds"),
+                config.getBoolean("whitelist-mode", false), logger);
+
+        titleEnabled = config.getBoolean("messages.title.enabled", false);
+        sleepTitle = config.getString("messages.title.sleep-title", "");
+        sleepSubtitle = config.getString("messages.title.sleep-subtitle", "");
+        morningTitle = config.getString("messages.title.morning-title", "");
+        morningSubtitle = config.getString("messages.title.morning-subtitle", "");
+        titleStayTicks = config.getInt("messages.title.stay-ticks", 0);
+        titleFadeTicks = config.getInt("messages.title.fade-ticks", 0);
+
+        bossBarEnabled = config.getBoolean("messages.bossbar.enabled", false);
+        bossBarMessage = config.getString("messages.bossbar.message", "");
+        bossBarColor = Enums.getIfPresent(BossBar.Color.class, config.getString("messages.bossbar.color", "")).or(BossBar.Color.BLUE);
+
+        placeholderApiCacheMillis = Math.max(0, config.getLong("messages.placeholderapi.cache-ttl", 1000));
+
+        traceEnabled = config.getBoolean("trace.enabled", false);
+        traceSampleInterval = Math.max(1, config.getInt("trace.sample-interval", 20));
+        traceTimeInterval = Math.max(1, config.getInt("trace.time-interval", 100));
+
+        // Default to 1 if its invalid
+        interval = Math.max(1, config.getInt("interval", 0));
+        timeUpdateInterval = Math.max(1, config.getInt("time-update-interval", 1));
+        debug = config.getBoolean("debug", false);
+    }
+
+    /**
+     * Compiles the given configuration into a settings snapshot.
+     *
+     * @param config The configuration to compile.
+     * @param logger The logger to report invalid values to.
+     *
+     * @return The compiled settings.
+     */
+    @NotNull
+    public static Settings load(@NotNull FileConfiguration config, @NotNull Logger logger) {
+        return new Settings(config, logger);
+    }
+
+    public boolean isNightSpeedEnabled() {
+        return nightSpeedEnabled;
+    }
+
+    public double getMinSpeedMultiplier() {
+        return minSpeedMultiplier;
+    }
+
+    public double getMaxSpeedMultiplier() {
+        return maxSpeedMultiplier;
+    }
+
+    public boolean isNightSkipEnabled() {
+        return nightSkipEnabled;
+    }
+
+    public double getSkipPercentage() {
+        return skipPercentage;
+    }
+
+    public boolean isInstantSkip() {
+        return instantSkip;
+    }
+
+    public double getSkipSpeedMultiplier() {
+        return skipSpeedMultiplier;
+    }
+
+    public boolean isClearRain() {
+        return clearRain;
+    }
+
+    public boolean isClearThunder() {
+        return clearThunder;
+    }
+
+    public boolean isResetPhantomStatistic() {
+        return resetPhantomStatistic;
+    }
+
+    /**
+     * @return The sound to play in the morning, or null if none is configured or the configured sound doesn't exist.
+     */
+    @Nullable
+    public Sound getMorningSound() {
+        return morningSound;
+    }
+
+    public boolean isExcludeIgnoredPermission() {
+        return excludeIgnoredPermission;
+    }
+
+    @NotNull
+    public Set<GameMode> getExcludedGameModes() {
+        return excludedGameModes;
+    }
+
+    public boolean isExcludeVanished() {
+        return excludeVanished;
+    }
+
+    public boolean isExcludeAfk() {
+        return excludeAfk;
+    }
+
+    public boolean isAfkFallbackEnabled() {
+        return afkFallbackEnabled;
+    }
+
+    public boolean isAfkEssentialsEnabled() {
+        return afkEssentialsEnabled;
+    }
+
+    @NotNull
+    public LogicType getAfkEssentialsDetectionMode() {
+        return afkEssentialsDetectionMode;
+    }
+
+    /**
+     * @return The time in minutes until a player is considered AFK by the fallback detection.
+     */
+    public int getAfkFallbackTimeout() {
+        return afkFallbackTimeout;
+    }
+
+    /**
+     * @return The distance in blocks a player has to move before the fallback detection counts it as activity.
+     */
+    public double getAfkFallbackMovementThreshold() {
+        return afkFallbackMovementThreshold;
+    }
+
+    /**
+     * @return The angle in degrees a player has to turn before the fallback detection counts it as activity.
+     */
+    public float getAfkFallbackRotationThreshold() {
+        return afkFallbackRotationThreshold;
+    }
+
+    /**
+     * @return The shortest interval in ticks between two movement checks of the same player, at least 1.
+     */
+    public int getAfkFallbackScanPeriod() {
+        return afkFallbackScanPeriod;
+    }
+
+    /**
+     * @return The longest interval in ticks between two movement checks of a player far from being AFK.
+     */
+    public int getAfkFallbackScanMaxPeriod() {
+        return afkFallbackScanMaxPeriod;
+    }
+
+    /**
+     * @return The time in nanoseconds the fallback detection may spend on movement checks per tick, 0 if unlimited.
+     */
+    public long getAfkFallbackScanBudgetNanos() {
+        return afkFallbackScanBudgetNanos;
+    }
+
+    /**
+     * @return The compiled world blacklist, which remembers its decision for each world until the next reload.
+     */
+    @NotNull
+    public WorldFilter getWorldFilter() {
+        return worldFilter;
+    }
+
+    public boolean isTitleEnabled() {
+        return titleEnabled;
+    }
+
+    @NotNull
+    public String getSleepTitle() {
+        return sleepTitle;
+    }
+
+    @NotNull
+    public String getSleepSubtitle() {
+        return sleepSubtitle;
+    }
+
+    @NotNull
+    public String getMorningTitle() {
+        return morningTitle;
+    }
+
+    @NotNull
+    public String getMorningSubtitle() {
+        return morningSubtitle;
+    }
+
+    public int getTitleStayTicks() {
+        return titleStayTicks;
+    }
+
+    public int getTitleFadeTicks() {
+        return titleFadeTicks;
+    }
+
+    public boolean isBossBarEnabled() {
+        return bossBarEnabled;
+    }
+
+    @NotNull
+    public String getBossBarMessage() {
+        return bossBarMessage;
+    }
+
+    @NotNull
+    public BossBar.Color getBossBarColor() {
+        return bossBarColor;
+    }
+
+    /**
+     * @return How long PlaceholderAPI results are reused for a player in milliseconds, 0 if they aren't cached.
+     */
+    public long getPlaceholderApiCacheMillis() {
+        return placeholderApiCacheMillis;
+    }
+
+    public boolean isTraceEnabled() {
+        return traceEnabled;
+    }
+
+    /**
+     * @return The interval in ticks between two samples of player positions and states in a trace, at least 1.
+     */
+    public int getTraceSampleInterval() {
+        return traceSampleInterval;
+    }
+
+    /**
+     * @return The interval in ticks between two samples of world time in a trace, at least 1.
+     */
+    public int getTraceTimeInterval() {
+        return traceTimeInterval;
+    }
+
+    /**
+     * @return The interval in ticks between checker passes, at least 1.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return The interval in ticks between two time updates while the night is accelerated, at least 1.
+     */
+    public int getTimeUpdateInterval() {
+        return timeUpdateInterval;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+}
@@ -0,0 +1,363 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.api.HarborAfkStatusChangeEvent;
+import xyz.nkomarn.harbor.scheduler.HarborScheduler;
+import xyz.nkomarn.harbor.task.Checker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the players, sleepers and excluded players of every world, so that the
+ * {@link Checker} does not have to scan every player in a world several times per pass.
+ * <p>
+ * The index is updated from player events and may be read from any thread.
+ */
+public class SleepIndex implements Listener {
+    private final Harbor harbor;
+    private final Checker checker;
+    private final Map<UUID, WorldSleepState> worlds;
+
+    public SleepIndex(@NotNull Harbor harbor, @NotNull Checker checker) {
+        this.harbor = harbor;
+        this.checker = checker;
+        this.worlds = new ConcurrentHashMap<>();
+
+        // Populate the index with any players that are already online (i.e. after a reload)
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            add(player, player.getWorld());
+        }
+    }
+
+    /**
+     * Reconciles the sleepers of the given world: sleepers that are no longer in bed are dropped, and the
+     * exclusion status of the others is re-evaluated, which only asks the providers that can't be cached.
+     * Everyone else is kept up to date by events, so a refresh costs O(sleepers).
+     * <p>
+     * On regionized servers each sleeper is re-evaluated on the thread that owns them, so the
+     * results become visible in the index shortly after this returns.
+     *
+     * @param world The world to refresh.
+     */
+    public void refresh(@NotNull World world) {
+        WorldSleepState state = worlds.get(world.getUID());
+
+        if (state == null || state.sleeping.isEmpty()) {
+            return;
+        }
+
+        HarborScheduler scheduler = harbor.getHarborScheduler();
+
+        for (Player player : state.sleeping.values()) {
+            if (scheduler.isRegionized()) {
+                scheduler.runForEntity(player, () -> refreshSleeper(state, player));
+            } else {
+                refreshSleeper(state, player);
+            }
+        }
+    }
+
+    private void refreshSleeper(@NotNull WorldSleepState state, @NotNull Player player) {
+        if (!player.isSleeping()) {
+            state.setSleeping(player, false);
+            return;
+        }
+
+        state.setExcluded(player.getUniqueId(), checker.isExcluded(player));
+    }
+
+    /**
+     * Re-evaluates the sleeping and exclusion status of a single player.
+     *
+     * @param player The player to update.
+     */
+    public void update(@NotNull Player player) {
+        if (!player.isOnline()) {
+            return;
+        }
+
+        WorldSleepState state = getOrCreate(player.getWorld());
+        state.setExcluded(player.getUniqueId(), checker.isExcluded(player));
+        state.setSleeping(player, player.isSleeping());
+    }
+
+    /**
+     * Returns all players in the given world, including excluded players.
+     *
+     * @param world The world for which to get the players.
+     *
+     * @return An unmodifiable view of the players in the given world.
+     */
+    @NotNull
+    public Collection<Player> getPlayers(@NotNull World world) {
+        WorldSleepState state = worlds.get(world.getUID());
+        return state == null ? Collections.emptyList() : Collections.unmodifiableCollection(state.players.values());
+    }
+
+    /**
+     * Returns the total amount of players in the given world, including excluded players.
+     *
+     * @param world The world for which to check player count.
+     *
+     * @return The amount of players in a given world.
+     */
+    public int getPlayerCount(@NotNull World world) {
+        WorldSleepState state = worlds.get(world.getUID());
+        return state == null ? 0 : state.playerCount;
+    }
+
+    /**
+     * Returns the amount of excluded players in the given world.
+     *
+     * @param world The world for which to check excluded player count.
+     *
+     * @return The amount of excluded players in a given world.
+     */
+    public int getExcludedCount(@NotNull World world) {
+        WorldSleepState state = worlds.get(world.getUID());
+        return state == null ? 0 : state.excludedCount;
+    }
+
+    /**
+     * Returns a number that changes whenever a player joins or leaves the given world, or starts or stops
+     * sleeping or being excluded in it.
+     *
+     * @param world The world for which to get the version.
+     *
+     * @return The current version of the world's sleep state, or -1 if the world isn't indexed.
+     */
+    public long getVersion(@NotNull World world) {
+        WorldSleepState state = worlds.get(world.getUID());
+        return state == null ? -1 : state.version;
+    }
+
+    /**
+     * Checks if the given player was excluded when the index last evaluated them.
+     *
+     * @param player The player to check.
+     *
+     * @return Whether the player is excluded in the world they are in.
+     */
+    public boolean isExcluded(@NotNull Player player) {
+        WorldSleepState state = worlds.get(player.getWorld().getUID());
+        return state != null && state.excluded.contains(player.getUniqueId());
+    }
+
+    /**
+     * Returns the amount of players in the given world that are counted, ignoring excluded players.
+     *
+     * @param world The world for which to check player count.
+     *
+     * @return The amount of players in a given world, minus excluded players.
+     */
+    public int getCountedPlayers(@NotNull World world) {
+        WorldSleepState state = worlds.get(world.getUID());
+        return state == null ? 0 : Math.max(0, state.playerCount - state.excludedCount);
+    }
+
+    /**
+     * Returns the amount of counted (non-excluded) players that are sleeping in the given world.
+     *
+     * @param world The world for which to check sleeping player count.
+     *
+     * @return The amount of sleeping players in a given world, minus excluded players.
+     */
+    public int getSleepingCount(@NotNull World world) {
+        WorldSleepState state = worlds.get(world.getUID());
+        return state == null ? 0 : Math.max(0, state.sleepingCount - state.excludedSleepingCount);
+    }
+
+    /**
+     * Returns a list of all sleeping players in a given world.
+     *
+     * @param world The world in which to check for sleeping players.
+     * @param includeExcluded Whether to include players that are excluded by an ExclusionProvider
+     *
+     * @return A list of all currently sleeping players in the provided world.
+     */
+    @NotNull
+    public List<Player> getSleepingPlayers(@NotNull World world, boolean includeExcluded) {
+        WorldSleepState state = worlds.get(world.getUID());
+
+        if (state == null || state.sleeping.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Player> players = new ArrayList<>(state.sleeping.size());
+
+        for (Player player : state.sleeping.values()) {
+            if (includeExcluded || !state.excluded.contains(player.getUniqueId())) {
+                players.add(player);
+            }
+        }
+
+        return players;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(@NotNull PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        add(player, player.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        Player player = event.getPlayer();
+        remove(player, player.getWorld());
+        checker.invalidateExclusions(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChanged(@NotNull PlayerChangedWorldEvent event) {
+        Player player = event.getPlayer();
+        checker.invalidateExclusions(player);
+        remove(player, event.getFrom());
+        add(player, player.getWorld());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onGameModeChange(@NotNull PlayerGameModeChangeEvent event) {
+        // The event fires before the game mode is applied, so re-evaluate on the next tick
+        Player player = event.getPlayer();
+        harbor.getHarborScheduler().runForEntityLater(player, () -> {
+            checker.invalidateExclusions(player);
+            update(player);
+        }, 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onCommandsSent(@NotNull PlayerCommandSendEvent event) {
+        // Commands are sent again when most permission plugins change a player's permissions. That isn't
+        // guaranteed, so the permission provider isn't cached, but it keeps the awake players' state fresh
+        Player player = event.getPlayer();
+        checker.invalidateExclusions(player);
+        harbor.getHarborScheduler().runForEntity(player, () -> update(player));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAfkStatusChange(@NotNull HarborAfkStatusChangeEvent event) {
+        Player player = event.getPlayer();
+        harbor.getHarborScheduler().runForEntity(player, () -> update(player));
+    }
+
+    @EventHandler
+    public void onWorldUnload(@NotNull WorldUnloadEvent event) {
+        worlds.remove(event.getWorld().getUID());
+    }
+
+    private void add(@NotNull Player player, @NotNull World world) {
+        getOrCreate(world).add(player, checker.isExcluded(player));
+    }
+
+    private void remove(@NotNull Player player, @NotNull World world) {
+        WorldSleepState state = worlds.get(world.getUID());
+
+        if (state != null) {
+            state.remove(player.getUniqueId());
+        }
+    }
+
+    @NotNull
+    private WorldSleepState getOrCreate(@NotNull World world) {
+        return worlds.computeIfAbsent(world.getUID(), uuid -> new WorldSleepState());
+    }
+
+    /**
+     * The sleep state of a single world. Mutations are serialized, reads are lock-free.
+     */
+    private static final class WorldSleepState {
+        private final Map<UUID, Player> players = new ConcurrentHashMap<>();
+        private final Map<UUID, Player> sleeping = new ConcurrentHashMap<>();
+        private final Set<UUID> excluded = ConcurrentHashMap.newKeySet();
+        private volatile int playerCount;
+        private volatile int sleepingCount;
+        private volatile int excludedCount;
+        private volatile int excludedSleepingCount;
+        private volatile long version;
+
+        synchronized void add(@NotNull Player player, boolean isExcluded) {
+            remove(player.getUniqueId());
+            players.put(player.getUniqueId(), player);
+            playerCount = players.size();
+            version++;
+            setExcluded(player.getUniqueId(), isExcluded);
+            setSleeping(player, player.isSleeping());
+        }
+
+        synchronized void remove(@NotNull UUID uuid) {
+            if (players.remove(uuid) == null) {
+                return;
+            }
+
+            if (sleeping.remove(uuid) != null && excluded.contains(uuid)) {
+                excludedSleepingCount--;
+            }
+
+            excluded.remove(uuid);
+            playerCount = players.size();
+            sleepingCount = sleeping.size();
+            excludedCount = excluded.size();
+            version++;
+        }
+
+        synchronized void setSleeping(@NotNull Player player, boolean isSleeping) {
+            UUID uuid = player.getUniqueId();
+
+            if (!players.containsKey(uuid)) {
+                return;
+            }
+
+            boolean changed = isSleeping ? sleeping.put(uuid, player) == null : sleeping.remove(uuid) != null;
+
+            if (!changed) {
+                return;
+            }
+
+            if (excluded.contains(uuid)) {
+                excludedSleepingCount += isSleeping ? 1 : -1;
+            }
+
+            sleepingCount = sleeping.size();
+            version++;
+        }
+
+        synchronized void setExcluded(@NotNull UUID uuid, boolean isExcluded) {
+            if (!players.containsKey(uuid)) {
+                return;
+            }
+
+            boolean changed = isExcluded ? excluded.add(uuid) : excluded.remove(uuid);
+
+            if (!changed) {
+                return;
+            }
+
+            if (sleeping.containsKey(uuid)) {
+                excludedSleepingCount += isExcluded ? 1 : -1;
+            }
+
+            excludedCount = excluded.size();
+            version++;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package xyz.nkomarn.harbor.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel for deadlines on a monotonic clock, such as {@link System#nanoTime()} or the server's
+ * tick counter. Scheduling is constant time, and advancing the wheel only touches the entries whose bucket came up.
+ * <p>
+ * The wheel spans a fixed amount of time; later deadlines are put into the last bucket and come up early, so
+ * callers should check the real deadline of an expired entry and schedule it again if needed. Not thread safe.
+ *
+ * @param <T> The type of the scheduled entries.
+ */
+public final class TimingWheel<T> {
+    private final long resolution;
+    private final ArrayDeque<T>[] buckets;
+    private long currentTick;
+
+    /**
+     * @param resolution The width of a single bucket.
+     * @param span       The longest delay that is expected to be scheduled.
+     * @param now        The current time.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long resolution, long span, long now) {
+        this.resolution = resolution;
+        int size = (int) Math.max(2, Math.min(1 << 16, span / resolution + 2));
+        this.buckets = new ArrayDeque[size];
+        this.currentTick = Math.floorDiv(now, resolution);
+    }
+
+    /**
+     * Schedules an entry to come up once its deadline has passed.
+     *
+     * @param entry    The entry to schedule.
+     * @param deadline The deadline on the wheel's clock.
+     */
+    public void schedule(@NotNull T entry, long deadline) {
+        long tick = -Math.floorDiv(-deadline, resolution);
+        tick = Math.max(currentTick + 1, Math.min(tick, currentTick + buckets.length - 1));
+
+        int index = (int) Math.floorMod(tick, (long) buckets.length);
+        ArrayDeque<T> bucket = buckets[index];
+        if (bucket == null) {
+            bucket = buckets[index] = new ArrayDeque<>();
+        }
+
+        bucket.add(entry);
+    }
+
+    /**
+     * Moves the wheel forward to the given time, handing every entry whose bucket came up to the consumer.
+     * The consumer may schedule entries again.
+     *
+     * @param now     The current time.
+     * @param expired The consumer for expired entries.
+     */
+    public void advance(long now, @NotNull Consumer<T> expired) {
+        long target = Math.floorDiv(now, resolution);
+
+        // After a long stall, visiting every bucket once is enough
+        if (target - currentTick > buckets.length) {
+            currentTick = target - buckets.length;
+        }
+
+        while (currentTick < target) {
+            currentTick++;
+            ArrayDeque<T> bucket = buckets[(int) Math.floorMod(currentTick, (long) buckets.length)];
+            if (bucket == null) {
+                continue;
+            }
+
+            // Entries scheduled again always land in a later bucket, so only drain what is here now
+            for (int remaining = bucket.size(); remaining > 0; remaining--) {
+                expired.accept(bucket.poll());
+            }
+        }
+    }
+}
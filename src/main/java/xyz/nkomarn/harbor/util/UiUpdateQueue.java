@@ -0,0 +1,173 @@
+package xyz.nkomarn.harbor.util;
+
+import net.kyori.adventure.bossbar.BossBar;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.title.Title;
+import net.kyori.adventure.util.Ticks;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.scheduler.HarborScheduler;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects the titles and bossbar updates Harbor wants to send and sends them in one flush, so that several
+ * updates for the same player or bar within a tick only result in the last one being sent, and titles that
+ * are already on screen aren't sent again.
+ */
+public final class UiUpdateQueue {
+    private final Harbor harbor;
+    private final HarborScheduler scheduler;
+    private final Map<UUID, PendingTitle> titles;
+    private final Map<WorldBossBar, PendingBar> bars;
+    private final AtomicBoolean flushScheduled;
+
+    public UiUpdateQueue(@NotNull Harbor harbor) {
+        this.harbor = harbor;
+        this.scheduler = harbor.getHarborScheduler();
+        this.titles = new ConcurrentHashMap<>();
+        this.bars = new ConcurrentHashMap<>();
+        this.flushScheduled = new AtomicBoolean();
+    }
+
+    /**
+     * Queues a title for the given player, replacing any title queued for them earlier. The title is rendered
+     * when it is sent, on the thread that owns the player.
+     *
+     * @param player    The player to show the title to.
+     * @param snapshot  The sleep state of the player's world.
+     * @param title     The title.
+     * @param subtitle  The subtitle.
+     * @param stayTicks How long the title stays on screen.
+     * @param fadeTicks How long the title takes to fade out.
+     */
+    public void queueTitle(@NotNull Player player, @NotNull WorldSleepSnapshot snapshot, @NotNull MessageTemplate title,
+                           @NotNull MessageTemplate subtitle, int stayTicks, int fadeTicks) {
+        titles.put(player.getUniqueId(), new PendingTitle(player, snapshot, title, subtitle, stayTicks, fadeTicks));
+        scheduleFlush();
+    }
+
+    /**
+     * Queues an update of the given bar, replacing any update queued for it earlier.
+     *
+     * @param bar      The bar to update.
+     * @param name     The name to show.
+     * @param color    The color of the bar.
+     * @param progress The progress of the bar.
+     */
+    public void queueBossBar(@NotNull WorldBossBar bar, @NotNull Component name, @NotNull BossBar.Color color, float progress) {
+        bars.put(bar, new PendingBar(name, color, progress));
+        scheduleFlush();
+    }
+
+    /**
+     * Drops any update queued for the given bar, for when it is about to be hidden.
+     *
+     * @param bar The bar.
+     */
+    public void cancelBossBar(@NotNull WorldBossBar bar) {
+        bars.remove(bar);
+    }
+
+    /**
+     * Drops any title queued for the given player.
+     *
+     * @param uuid The unique id of the player.
+     */
+    public void cancelTitle(@NotNull UUID uuid) {
+        titles.remove(uuid);
+    }
+
+    /**
+     * Sends everything that has been queued so far. Titles are rendered and sent on the thread that owns their player.
+     */
+    public void flush() {
+        Iterator<Map.Entry<WorldBossBar, PendingBar>> barIterator = bars.entrySet().iterator();
+
+        while (barIterator.hasNext()) {
+            Map.Entry<WorldBossBar, PendingBar> entry = barIterator.next();
+            barIterator.remove();
+
+            PendingBar pending = entry.getValue();
+            harbor.getMetrics().getBossBarUpdates().add(entry.getKey().update(pending.name, pending.color, pending.progress));
+        }
+
+        Iterator<PendingTitle> titleIterator = titles.values().iterator();
+
+        while (titleIterator.hasNext()) {
+            PendingTitle pending = titleIterator.next();
+            titleIterator.remove();
+            scheduler.runForEntity(pending.player, () -> send(pending));
+        }
+    }
+
+    private void send(@NotNull PendingTitle pending) {
+        Player player = pending.player;
+
+        if (!player.isOnline()) {
+            return;
+        }
+
+        Component title = pending.title.render(player, pending.snapshot);
+        Component subtitle = pending.subtitle.render(player, pending.snapshot);
+        PlayerUiState state = harbor.getPlayerManager().getUiState(player);
+        int tick = Bukkit.getCurrentTick();
+
+        if (state.isShowing(title, subtitle, tick)) {
+            harbor.getMetrics().getTitlesSkipped().increment();
+            return;
+        }
+
+        player.showTitle(Title.title(title, subtitle,
+                Title.Times.times(Ticks.duration(0), Ticks.duration(pending.stayTicks), Ticks.duration(pending.fadeTicks))));
+        state.titleSent(title, subtitle, tick, pending.stayTicks);
+        harbor.getMetrics().getTitlesSent().increment();
+    }
+
+    private void scheduleFlush() {
+        // Anything not flushed explicitly by the end of the tick goes out on the next one
+        if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.runGlobal(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    private static final class PendingTitle {
+        private final Player player;
+        private final WorldSleepSnapshot snapshot;
+        private final MessageTemplate title;
+        private final MessageTemplate subtitle;
+        private final int stayTicks;
+        private final int fadeTicks;
+
+        private PendingTitle(@NotNull Player player, @NotNull WorldSleepSnapshot snapshot, @NotNull MessageTemplate title,
+                             @NotNull MessageTemplate subtitle, int stayTicks, int fadeTicks) {
+            this.player = player;
+            this.snapshot = snapshot;
+            this.title = title;
+            this.subtitle = subtitle;
+            this.stayTicks = stayTicks;
+            this.fadeTicks = fadeTicks;
+        }
+    }
+
+    private static final class PendingBar {
+        private final Component name;
+        private final BossBar.Color color;
+        private final float progress;
+
+        private PendingBar(@NotNull Component name, @NotNull BossBar.Color color, float progress) {
+            this.name = name;
+            this.color = color;
+            this.progress = progress;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package xyz.nkomarn.harbor.util;
+
+import net.ess3.api.events.VanishStatusChangeEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.PluginManager;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.task.Checker;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of which players are vanished, so that checking it is a set lookup.
+ * <p>
+ * The state follows the events of SuperVanish, PremiumVanish and Essentials where those are installed,
+ * is read from the {@code vanished} metadata when a player joins, and is reconciled with the metadata
+ * of all players every {@link #RECONCILE_PERIOD} ticks for plugins that only set metadata.
+ */
+public class VanishTracker implements Listener {
+    private static final long RECONCILE_PERIOD = 600;
+
+    private final Harbor harbor;
+    private final Set<UUID> vanished;
+
+    public VanishTracker(@NotNull Harbor harbor) {
+        this.harbor = harbor;
+        this.vanished = ConcurrentHashMap.newKeySet();
+
+        PluginManager pluginManager = harbor.getServer().getPluginManager();
+        // SuperVanish and PremiumVanish share their API
+        subscribe(pluginManager, "de.myzelyam.api.vanish.PlayerHideEvent", true);
+        subscribe(pluginManager, "de.myzelyam.api.vanish.PlayerShowEvent", false);
+        if (isClassPresent("net.ess3.api.events.VanishStatusChangeEvent")) {
+            pluginManager.registerEvents(new EssentialsListener(), harbor);
+        }
+
+        // Populate the state with any players that are already online (i.e. after a reload)
+        reconcile();
+        harbor.getHarborScheduler().runGlobalTimer(this::reconcile, RECONCILE_PERIOD, RECONCILE_PERIOD);
+    }
+
+    /**
+     * Checks if a given player is in a vanished state.
+     *
+     * @param player The player to check.
+     *
+     * @return Whether the provided player is vanished.
+     */
+    public boolean isVanished(@NotNull Player player) {
+        return vanished.contains(player.getUniqueId());
+    }
+
+    /**
+     * Updates the vanished state of a player, and re-evaluates their exclusion if it changed.
+     *
+     * @param player   The player to update.
+     * @param vanished Whether the player is now vanished.
+     */
+    public void setVanished(@NotNull Player player, boolean vanished) {
+        boolean changed = vanished ? this.vanished.add(player.getUniqueId()) : this.vanished.remove(player.getUniqueId());
+        Checker checker = harbor.getChecker();
+
+        if (changed && checker != null && player.isOnline()) {
+            harbor.getHarborScheduler().runForEntity(player, () -> checker.getSleepIndex().update(player));
+        }
+    }
+
+    /**
+     * Reads the vanish metadata of every online player on the thread that owns them.
+     */
+    private void reconcile() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            harbor.getHarborScheduler().runForEntity(player, () -> setVanished(player, Checker.isVanished(player)));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(@NotNull PlayerJoinEvent event) {
+        // Vanish plugins may only set their metadata after the join event went through
+        Player player = event.getPlayer();
+        harbor.getHarborScheduler().runForEntityLater(player, () -> setVanished(player, Checker.isVanished(player)), 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(@NotNull PlayerQuitEvent event) {
+        vanished.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Registers for an optional player event of another plugin, if the plugin is installed.
+     */
+    private void subscribe(@NotNull PluginManager pluginManager, @NotNull String className, boolean hidden) {
+        Class<?> type;
+
+        try {
+            type = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+
+        if (!PlayerEvent.class.isAssignableFrom(type)) {
+            return;
+        }
+
+        pluginManager.registerEvent(type.asSubclass(Event.class), this, EventPriority.MONITOR, (listener, event) -> {
+            if (type.isInstance(event)) {
+                setVanished(((PlayerEvent) event).getPlayer(), hidden);
+            }
+        }, harbor, true);
+    }
+
+    private static boolean isClassPresent(@NotNull String className) {
+        try {
+            Class.forName(className);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Only loaded once the event is known to exist in the installed Essentials version
+     */
+    private final class EssentialsListener implements Listener {
+        @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+        public void onVanishStatusChange(VanishStatusChangeEvent event) {
+            setVanished(event.getAffected().getBase(), event.getValue());
+        }
+    }
+}
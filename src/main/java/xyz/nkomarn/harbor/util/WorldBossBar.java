@@ -0,0 +1,121 @@
+package xyz.nkomarn.harbor.util;
+
+import net.kyori.adventure.bossbar.BossBar;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The bossbar of a single world. Keeps track of its current name, color and progress as well as the players
+ * it is shown to, so that updates only go out when something actually changed.
+ */
+public final class WorldBossBar {
+    private final BossBar bar;
+    private final Map<UUID, Player> viewers;
+    private volatile boolean visible;
+
+    public WorldBossBar() {
+        this.bar = BossBar.bossBar(Component.empty(), 0.0f, BossBar.Color.WHITE, BossBar.Overlay.PROGRESS);
+        this.viewers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Updates the contents of the bar. Values that didn't change are not sent again.
+     *
+     * @param name     The name to show.
+     * @param color    The color of the bar.
+     * @param progress The progress of the bar, between 0 and 1.
+     *
+     * @return How many values changed.
+     */
+    public synchronized int update(@NotNull Component name, @NotNull BossBar.Color color, float progress) {
+        int changes = 0;
+
+        if (!bar.name().equals(name)) {
+            bar.name(name);
+            changes++;
+        }
+
+        if (bar.color() != color) {
+            bar.color(color);
+            changes++;
+        }
+
+        if (bar.progress() != progress) {
+            bar.progress(progress);
+            changes++;
+        }
+
+        return changes;
+    }
+
+    /**
+     * Shows the bar to the given players if it isn't visible yet. Once visible, players joining the world are
+     * added through {@link #addViewer(Player)} instead.
+     *
+     * @param players The players currently in the world.
+     */
+    public synchronized void show(@NotNull Collection<Player> players) {
+        if (visible) {
+            return;
+        }
+
+        visible = true;
+
+        for (Player player : players) {
+            addViewer(player);
+        }
+    }
+
+    /**
+     * Hides the bar from everyone it is currently shown to.
+     */
+    public synchronized void hide() {
+        if (!visible && viewers.isEmpty()) {
+            return;
+        }
+
+        visible = false;
+
+        for (Player player : viewers.values()) {
+            player.hideBossBar(bar);
+        }
+
+        viewers.clear();
+    }
+
+    /**
+     * Shows the bar to a player that entered the world, if the bar is currently visible.
+     *
+     * @param player The player to add.
+     */
+    public synchronized void addViewer(@NotNull Player player) {
+        if (visible && viewers.putIfAbsent(player.getUniqueId(), player) == null) {
+            player.showBossBar(bar);
+        }
+    }
+
+    /**
+     * Hides the bar from a player that left the world.
+     *
+     * @param player The player to remove.
+     * @param online Whether the player is still online, and thus needs to be told to hide the bar.
+     */
+    public synchronized void removeViewer(@NotNull Player player, boolean online) {
+        if (viewers.remove(player.getUniqueId()) != null && online) {
+            player.hideBossBar(bar);
+        }
+    }
+
+    /**
+     * @return Whether the bar is currently shown in its world.
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+}
@@ -0,0 +1,147 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The compiled world blacklist (or whitelist). Entries are exact world names, globs using {@code *} and {@code ?},
+ * or regular expressions prefixed with {@code regex:}. The decision for a world is made once and remembered by the
+ * world's unique id.
+ */
+public final class WorldFilter {
+    private static final String REGEX_PREFIX = "regex:";
+
+    private final Set<String> names;
+    private final Pattern[] patterns;
+    private final boolean whitelist;
+    private final Map<UUID, Boolean> decisions;
+
+    private WorldFilter(@NotNull Set<String> names, @NotNull Pattern[] patterns, boolean whitelist) {
+        this.names = names;
+        this.patterns = patterns;
+        this.whitelist = whitelist;
+        this.decisions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Compiles the given list entries into a filter. Invalid regular expressions are logged and never match.
+     *
+     * @param entries   The configured world names and patterns.
+     * @param whitelist Whether the entries list the only worlds Harbor handles, instead of the ones it ignores.
+     * @param logger    The logger to report invalid entries to.
+     *
+     * @return The compiled filter.
+     */
+    @NotNull
+    public static WorldFilter compile(@NotNull Collection<String> entries, boolean whitelist, @NotNull Logger logger) {
+        Set<String> names = new HashSet<>();
+        List<Pattern> patterns = new ArrayList<>();
+
+        for (String entry : entries) {
+            if (entry.startsWith(REGEX_PREFIX)) {
+                try {
+                    patterns.add(Pattern.compile(entry.substring(REGEX_PREFIX.length())));
+                } catch (PatternSyntaxException e) {
+                    logger.warning("Ignoring the invalid world pattern '" + entry + "': " + e.getDescription());
+                }
+            } else if (entry.indexOf('*') >= 0 || entry.indexOf('?') >= 0) {
+                patterns.add(glob(entry));
+            } else {
+                names.add(entry);
+            }
+        }
+
+        return new WorldFilter(names, patterns.toArray(new Pattern[0]), whitelist);
+    }
+
+    /**
+     * Checks if Harbor should ignore the given world.
+     *
+     * @param world The world to check.
+     *
+     * @return Whether the world is excluded from Harbor checks.
+     */
+    public boolean isBlacklisted(@NotNull World world) {
+        Boolean decision = decisions.get(world.getUID());
+
+        if (decision == null) {
+            decision = classify(world);
+        }
+
+        return decision;
+    }
+
+    /**
+     * Makes and remembers the decision for a world, i.e. when it is loaded.
+     *
+     * @param world The world to classify.
+     *
+     * @return Whether the world is excluded from Harbor checks.
+     */
+    public boolean classify(@NotNull World world) {
+        boolean listed = matches(world.getName());
+        boolean decision = whitelist != listed;
+        decisions.put(world.getUID(), decision);
+        return decision;
+    }
+
+    /**
+     * Forgets the decision for a world that was unloaded.
+     *
+     * @param world The unloaded world.
+     */
+    public void forget(@NotNull World world) {
+        decisions.remove(world.getUID());
+    }
+
+    private boolean matches(@NotNull String name) {
+        if (names.contains(name)) {
+            return true;
+        }
+
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @NotNull
+    private static Pattern glob(@NotNull String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+
+            if (c == '*' || c == '?') {
+                if (literalStart < i) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+
+                regex.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+}
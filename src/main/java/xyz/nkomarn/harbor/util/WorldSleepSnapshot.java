@@ -0,0 +1,101 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * An immutable view of a world's sleep state, computed once per {@link xyz.nkomarn.harbor.task.Checker} pass
+ * and shared by everything that needs those numbers during that pass.
+ */
+public final class WorldSleepSnapshot {
+    private final World world;
+    private final List<Player> sleepingPlayers;
+    private final int sleeping;
+    private final int players;
+    private final int skipAmount;
+    private final int needed;
+    private final double timescale;
+    private final long time;
+    private final int tick;
+
+    public WorldSleepSnapshot(@NotNull World world, @NotNull List<Player> sleepingPlayers, int sleeping, int players,
+                              int skipAmount, int needed, double timescale, long time, int tick) {
+        this.world = world;
+        this.sleepingPlayers = List.copyOf(sleepingPlayers);
+        this.sleeping = sleeping;
+        this.players = players;
+        this.skipAmount = skipAmount;
+        this.needed = needed;
+        this.timescale = timescale;
+        this.time = time;
+        this.tick = tick;
+    }
+
+    /**
+     * @return The world this snapshot was taken of.
+     */
+    @NotNull
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * @return All sleeping players in the world, including excluded players.
+     */
+    @NotNull
+    public List<Player> getSleepingPlayers() {
+        return sleepingPlayers;
+    }
+
+    /**
+     * @return The amount of sleeping players, ignoring excluded players.
+     */
+    public int getSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * @return The amount of players that are counted, ignoring excluded players.
+     */
+    public int getPlayers() {
+        return players;
+    }
+
+    /**
+     * @return The amount of players that must be sleeping to skip the night.
+     */
+    public int getSkipAmount() {
+        return skipAmount;
+    }
+
+    /**
+     * @return The amount of players that still need to get into bed to skip the night.
+     */
+    public int getNeeded() {
+        return needed;
+    }
+
+    /**
+     * @return The timescale the night should currently be running at.
+     */
+    public double getTimescale() {
+        return timescale;
+    }
+
+    /**
+     * @return The world time at which this snapshot was taken.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return The server tick at which this snapshot was taken.
+     */
+    public int getTick() {
+        return tick;
+    }
+}